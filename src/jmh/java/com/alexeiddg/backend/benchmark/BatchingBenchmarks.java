@@ -0,0 +1,91 @@
+package com.alexeiddg.backend.benchmark;
+
+import com.alexeiddg.backend.encryption.engine.BatchingEngine;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// A window's worth of small messages, each with its own key and round count: the engine per message
+// against one packed pass. Time is per batch, so messages / score is the small-message throughput.
+// The per-message baseline uses the fused kernel, whose round constants are cached on the schedule
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchingBenchmarks {
+
+    @Param({"1", "4"})
+    private int messageBlocks;
+
+    @Param({"16", "256"})
+    private int messages;
+
+    private ConfigurableApplicationContext context;
+    private BlockEngine blockEngine;
+    private BatchingEngine batchingEngine;
+    private List<BatchingEngine.Message> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start("--cipher.engine.kernel=fused", "--cipher.engine.parallel.enabled=false");
+        blockEngine = context.getBean(BlockEngine.class);
+        batchingEngine = context.getBean(BatchingEngine.class);
+        KeyScheduleService keyScheduleService = context.getBean(KeyScheduleService.class);
+
+        Random random = new Random(messages);
+        batch = new ArrayList<>(messages);
+        for (int i = 0; i < messages; i++) {
+            byte[] key = BenchmarkContext.key(random.nextInt(24) + 1);
+            key[1] = (byte) i;
+            KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(key));
+            byte[] blocks = new byte[messageBlocks * 16];
+            random.nextBytes(blocks);
+            batch.add(new BatchingEngine.Message(blocks, 0, blocks.length, schedule));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        batch.forEach(message -> message.schedule().close());
+        context.close();
+    }
+
+    @Benchmark
+    public List<BatchingEngine.Message> encryptPerMessage() {
+        for (BatchingEngine.Message message : batch) {
+            blockEngine.encrypt(message.blocks(), message.offset(), message.length(), message.schedule());
+        }
+        return batch;
+    }
+
+    @Benchmark
+    public List<BatchingEngine.Message> encryptPacked() {
+        batchingEngine.encryptPacked(batch);
+        return batch;
+    }
+
+    @Benchmark
+    public List<BatchingEngine.Message> decryptPerMessage() {
+        for (BatchingEngine.Message message : batch) {
+            blockEngine.decrypt(message.blocks(), message.offset(), message.length(), message.schedule());
+        }
+        return batch;
+    }
+
+    @Benchmark
+    public List<BatchingEngine.Message> decryptPacked() {
+        batchingEngine.decryptPacked(batch);
+        return batch;
+    }
+}
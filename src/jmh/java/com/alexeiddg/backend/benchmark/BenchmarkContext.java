@@ -0,0 +1,35 @@
+package com.alexeiddg.backend.benchmark;
+
+import com.alexeiddg.backend.BackendApplication;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.Random;
+
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    // Services wired as in production, without the web server; the schedule cache is off so
+    // decrypt benchmarks pay for the key expansion like a cold request
+    static ConfigurableApplicationContext start(String... properties) {
+        SpringApplication application = new SpringApplication(BackendApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        String[] args = Arrays.copyOf(properties, properties.length + 2);
+        args[properties.length] = "--cipher.key-cache.enabled=false";
+        args[properties.length + 1] = "--logging.level.root=WARN";
+        return application.run(args);
+    }
+
+    // Fixed key whose first byte selects the round count
+    static byte[] key(int rounds) {
+        byte[] key = new byte[16];
+        new Random(rounds).nextBytes(key);
+        key[0] = (byte) rounds;
+        return key;
+    }
+}
@@ -0,0 +1,64 @@
+package com.alexeiddg.backend.benchmark;
+
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Substitution, rounds and CBC through the engine per kernel, with the schedule built once per trial
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmarks {
+
+    @Param({"reference", "fused", "pipeline"})
+    private String kernel;
+
+    @Param({"1024", "1048576"})
+    private int payloadSize;
+
+    @Param({"1", "16"})
+    private int rounds;
+
+    private ConfigurableApplicationContext context;
+    private BlockEngine blockEngine;
+    private KeySchedule schedule;
+    private byte[] blocks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start("--cipher.engine.kernel=" + kernel, "--cipher.engine.parallel.enabled=false");
+        blockEngine = context.getBean(BlockEngine.class);
+        schedule = context.getBean(KeyScheduleService.class)
+                .buildSchedule(KeyMatrix.rebuildMatrix(BenchmarkContext.key(rounds)));
+        blocks = new byte[payloadSize];
+        new Random(payloadSize).nextBytes(blocks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        schedule.close();
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        blockEngine.encrypt(blocks, schedule);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        blockEngine.decrypt(blocks, schedule);
+        return blocks;
+    }
+}
@@ -0,0 +1,68 @@
+package com.alexeiddg.backend.benchmark;
+
+import com.alexeiddg.backend.encryption.service.SBoxService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import com.alexeiddg.backend.util.HashService;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+// Per-key costs, which don't depend on payload size; the schedule build repeats the hash once per round
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyStageBenchmarks {
+
+    @Param({"1", "8", "16", "24"})
+    private int rounds;
+
+    private final HashService hashService = new HashService();
+
+    private ConfigurableApplicationContext context;
+    private KeyScheduleService keyScheduleService;
+    private KeyMatrix keyMatrix;
+    private byte[] key;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        keyScheduleService = context.getBean(KeyScheduleService.class);
+        key = BenchmarkContext.key(rounds);
+        keyMatrix = KeyMatrix.rebuildMatrix(key);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] generateSBox() throws NoSuchAlgorithmException {
+        return SBoxService.generateSBox(key);
+    }
+
+    @Benchmark
+    public byte[] generateSBoxV2() throws NoSuchAlgorithmException {
+        return SBoxService.generateSBoxV2(key);
+    }
+
+    @Benchmark
+    public KeyMatrix sha256() throws NoSuchAlgorithmException {
+        return hashService.applySha256ToMatrix(keyMatrix);
+    }
+
+    @Benchmark
+    public int buildSchedule() throws NoSuchAlgorithmException {
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(keyMatrix)) {
+            return schedule.getRounds();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.alexeiddg.backend.benchmark;
+
+import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// End-to-end service calls with a fixed round count, including padding, encoding and the schedule build
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceBenchmarks {
+
+    @Param({"16", "1024", "65536", "1048576", "67108864"})
+    private int payloadSize;
+
+    @Param({"1", "8", "16", "24"})
+    private int rounds;
+
+    // The text is one repeated letter, so with compression on it deflates to a few blocks; off by default so the
+    // rounds run over the whole payload and results stay comparable across commits
+    @Param({"false"})
+    private boolean compression;
+
+    private ConfigurableApplicationContext context;
+    private EncryptionService encryptionService;
+    private DecryptionService decryptionService;
+    private KeyMatrix key;
+    private String text;
+    private EncryptionResponse encrypted;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start("--cipher.compression.enabled=" + compression);
+        encryptionService = context.getBean(EncryptionService.class);
+        decryptionService = context.getBean(DecryptionService.class);
+        key = KeyMatrix.rebuildMatrix(BenchmarkContext.key(rounds));
+        text = "a".repeat(payloadSize);
+        encrypted = encryptionService.encrypt(text, key);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public EncryptionResponse encrypt() throws Exception {
+        return encryptionService.encrypt(text, key);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return decryptionService.decrypt(encrypted.getEncryptionKey(), encrypted.getCipherText());
+    }
+}
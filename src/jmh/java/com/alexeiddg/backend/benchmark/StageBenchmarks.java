@@ -0,0 +1,104 @@
+package com.alexeiddg.backend.benchmark;
+
+import com.alexeiddg.backend.encryption.service.CBCService;
+import com.alexeiddg.backend.encryption.service.SBoxService;
+import com.alexeiddg.backend.encryption.service.TransformService;
+import com.alexeiddg.backend.encryption.service.TransposeService;
+import com.alexeiddg.backend.encryption.service.XORService;
+import com.alexeiddg.backend.encryption.util.CipherTextGenerator;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One benchmark per block stage, each run over the whole payload in place
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmarks {
+
+    @Param({"16", "1024", "65536", "1048576", "67108864"})
+    private int payloadSize;
+
+    private final XORService xorService = new XORService();
+    private final SBoxService sBoxService = new SBoxService();
+    private final TransformService transformService = new TransformService();
+    private final TransposeService transposeService = new TransposeService();
+    private final CBCService cbcService = new CBCService();
+    private final CipherTextGenerator cipherTextGenerator = new CipherTextGenerator();
+
+    private byte[] plain;
+    private byte[] blocks;
+    private byte[] key;
+    private byte[] sBox;
+    private int[] shiftAmounts;
+    private int[] blockPermutation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchAlgorithmException {
+        Random random = new Random(11);
+        plain = new byte[payloadSize];
+        random.nextBytes(plain);
+        blocks = StringToBitstream.generateBlockPadding(plain);
+        key = new byte[16];
+        random.nextBytes(key);
+
+        KeyMatrix keyMatrix = KeyMatrix.rebuildMatrix(key);
+        sBox = SBoxService.generateSBox(key);
+        shiftAmounts = transformService.calculateShiftAmounts(keyMatrix);
+        blockPermutation = transposeService.generateBlockPermutation(transposeService.generatePermutationFromKey(keyMatrix));
+    }
+
+    @Benchmark
+    public byte[] xor() {
+        xorService.xorBlocks(blocks, 0, blocks.length, key);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] sBoxSubstitution() {
+        sBoxService.applySBoxSubstitution(blocks, 0, blocks.length, sBox);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] bitShift() {
+        transformService.performBitShift(blocks, 0, blocks.length, shiftAmounts, true);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] transpose() {
+        transposeService.transposeBlocks(blocks, 0, blocks.length, blockPermutation);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] cbc() {
+        cbcService.applyCBC(blocks, 0, blocks.length, key);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] reverseCbc() {
+        cbcService.reverseCBC(blocks, 0, blocks.length, key);
+        return blocks;
+    }
+
+    @Benchmark
+    public byte[] padding() {
+        return StringToBitstream.generateBlockPadding(plain);
+    }
+
+    @Benchmark
+    public String cipherText() {
+        return cipherTextGenerator.returnCipherText(blocks);
+    }
+}
@@ -0,0 +1,209 @@
+package com.alexeiddg.backend.benchmark;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+// Cold start of the plain jar against the fast-start layout (the -Pfast-start jar extracted, with Spring
+// AOT enabled and an AppCDS archive from a training run, as in the Dockerfile). Every run starts a new
+// JVM and measures the time to the first successful /api/encrypt, then JIT warm-up: how long until
+// /api/encrypt latency settles, and where it settles. JDK only, so it runs as a source file after
+// mvn -Pfast-start package:
+//   java src/jmh/java/com/alexeiddg/backend/benchmark/StartupBenchmark.java [runs]
+// -Dstartup.jar and -Dstartup.jvm-args override the jar and the flags the application JVMs get
+public class StartupBenchmark {
+
+    private static final Path JAR = Path.of(System.getProperty("startup.jar", "target/backend-0.0.1-SNAPSHOT.jar"));
+    private static final Path LOGS = Path.of("target/fast-start");
+    private static final Path LAYOUT = LOGS.resolve("app");
+    private static final Path RESULT = Path.of("target/startup-result.json");
+    private static final List<String> JVM_ARGS =
+            List.of(System.getProperty("startup.jvm-args", "--add-modules jdk.incubator.vector").split(" "));
+
+    private static final String BODY = "{\"text\":\"" + "startup benchmark ".repeat(57) + "\"}";
+    private static final int BATCH = 50;
+    private static final int MAX_BATCHES = 200;
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(120);
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+    record Run(double firstResponseMillis, double firstLatencyMicros, double warmupMillis, int warmupRequests,
+               double steadyLatencyMicros) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        StartupBenchmark benchmark = new StartupBenchmark();
+        Path archive = benchmark.prepareLayout();
+
+        List<String> plain = new ArrayList<>(JVM_ARGS);
+        plain.addAll(List.of("-jar", JAR.toAbsolutePath().toString()));
+        List<String> fastStart = new ArrayList<>(JVM_ARGS);
+        fastStart.addAll(List.of("-XX:SharedArchiveFile=" + archive.getFileName(), "-Dspring.aot.enabled=true",
+                "-jar", JAR.getFileName().toString()));
+
+        StringBuilder json = new StringBuilder("{");
+        for (String mode : List.of("plain", "fast-start")) {
+            List<Run> results = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                Run run = benchmark.run(mode.equals("plain") ? plain : fastStart, LAYOUT, LOGS.resolve(mode + "-" + i + ".log"));
+                System.out.printf(Locale.ROOT, "%-10s run %d: first response %.0f ms, warm after %.0f ms (%d requests)%n",
+                        mode, i, run.firstResponseMillis(), run.warmupMillis(), run.warmupRequests());
+                results.add(run);
+            }
+            json.append(json.length() > 1 ? "," : "").append('"').append(mode).append("\":").append(summarize(mode, results));
+        }
+        Files.writeString(RESULT, json.append('}').toString());
+        System.out.println("Results written to " + RESULT);
+    }
+
+    // Extracts the jar and records the archive once per jar build, as the Dockerfile does
+    private Path prepareLayout() throws IOException, InterruptedException {
+        if (!Files.exists(JAR)) {
+            throw new IllegalStateException(JAR + " not found; build it with mvn -Pfast-start package");
+        }
+        Path archive = LAYOUT.resolve("app.jsa");
+        if (Files.exists(archive) && Files.getLastModifiedTime(archive).compareTo(Files.getLastModifiedTime(JAR)) > 0) {
+            return archive;
+        }
+        if (Files.exists(LAYOUT)) {
+            try (Stream<Path> paths = Files.walk(LAYOUT)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+            }
+        }
+        Files.createDirectories(LOGS);
+        exec(List.of(java(), "-Djarmode=tools", "-jar", JAR.toAbsolutePath().toString(), "extract",
+                "--destination", LAYOUT.toAbsolutePath().toString()), Path.of("."), LOGS.resolve("extract.log"));
+
+        List<String> training = new ArrayList<>(JVM_ARGS);
+        training.addAll(List.of("-XX:ArchiveClassesAtExit=" + archive.getFileName(), "-Dspring.aot.enabled=true",
+                "-Dspring.context.exit=onRefresh", "-jar", JAR.getFileName().toString()));
+        training.addFirst(java());
+        exec(training, LAYOUT, LOGS.resolve("training.log"));
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("Training run wrote no archive; see " + LOGS.resolve("training.log"));
+        }
+        return archive;
+    }
+
+    private Run run(List<String> jvmArgs, Path directory, Path log) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>(jvmArgs);
+        command.addFirst(java());
+        command.add("--server.port=" + port);
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/encrypt"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                .build();
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(directory.toFile())
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            long firstLatency = awaitFirstResponse(process, request, started);
+            double firstResponseMillis = (System.nanoTime() - started) / 1e6;
+
+            // Warm once three consecutive batches agree within 10%; the last batch is the steady latency
+            // (or after MAX_BATCHES, which then counts as the warm-up)
+            long[] batchStarts = new long[MAX_BATCHES + 1];
+            double[] means = new double[MAX_BATCHES];
+            int batches = 0;
+            int settledAt = -1;
+            while (batches < MAX_BATCHES && settledAt < 0) {
+                batchStarts[batches] = System.nanoTime();
+                means[batches++] = batchMeanMicros(request);
+                if (batches >= 3 && within(means[batches - 3], means[batches - 1]) && within(means[batches - 2], means[batches - 1])) {
+                    settledAt = batches - 3;
+                }
+            }
+            batchStarts[batches] = System.nanoTime();
+            int warmBatches = (settledAt < 0) ? batches : settledAt;
+            return new Run(firstResponseMillis, firstLatency / 1e3, (batchStarts[warmBatches] - batchStarts[0]) / 1e6,
+                    warmBatches * BATCH, means[batches - 1]);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    // Polls until /api/encrypt answers 200; returns that request's latency in nanoseconds
+    private long awaitFirstResponse(Process process, HttpRequest request, long started) throws Exception {
+        while (System.nanoTime() - started < START_TIMEOUT.toNanos()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue());
+            }
+            long sent = System.nanoTime();
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return System.nanoTime() - sent;
+                }
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("No successful /api/encrypt within " + START_TIMEOUT);
+    }
+
+    private double batchMeanMicros(HttpRequest request) throws Exception {
+        long started = System.nanoTime();
+        for (int i = 0; i < BATCH; i++) {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("/api/encrypt returned " + response.statusCode());
+            }
+        }
+        return (System.nanoTime() - started) / 1e3 / BATCH;
+    }
+
+    private static boolean within(double a, double b) {
+        return Math.abs(a - b) <= 0.1 * Math.min(a, b);
+    }
+
+    // Medians across runs
+    private static String summarize(String mode, List<Run> runs) {
+        double first = median(runs.stream().mapToDouble(Run::firstResponseMillis).toArray());
+        double firstLatency = median(runs.stream().mapToDouble(Run::firstLatencyMicros).toArray());
+        double warmup = median(runs.stream().mapToDouble(Run::warmupMillis).toArray());
+        double warmupRequests = median(runs.stream().mapToDouble(Run::warmupRequests).toArray());
+        double steady = median(runs.stream().mapToDouble(Run::steadyLatencyMicros).toArray());
+        System.out.printf(Locale.ROOT, "%-10s median: first response %.0f ms (%.0f us), warm after %.0f ms / %.0f requests, steady %.0f us%n",
+                mode, first, firstLatency, warmup, warmupRequests, steady);
+        return String.format(Locale.ROOT, "{\"runs\":%d,\"firstResponseMillis\":%.1f,\"firstLatencyMicros\":%.1f,"
+                        + "\"warmupMillis\":%.1f,\"warmupRequests\":%.0f,\"steadyLatencyMicros\":%.1f}",
+                runs.size(), first, firstLatency, warmup, warmupRequests, steady);
+    }
+
+    private static double median(double[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+        return (values.length % 2 == 1) ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static void exec(List<String> command, Path directory, Path log) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).directory(directory.toFile())
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " failed; see " + log);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.alexeiddg.backend.admission;
+
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+// Admission in front of the /api/encrypt* and /api/decrypt* endpoints. A request costs its 16-byte
+// blocks times its rounds: encrypt rounds are drawn later, so they count as the average of 1..24;
+// decrypt rounds come from the key where it is cheap to read (the stream header, the frame header)
+// and count as the worst case where it is not (JSON bodies, which are only parsed by the controller).
+// A key's first byte is its round count, up to 255, and every one of those rounds runs
+@Slf4j
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final int MAX_ROUNDS = 255;
+    private static final int AVERAGE_ROUNDS = 13;
+
+    @Autowired
+    private AdmissionService admissionService;
+
+    @Value("${cipher.admission.enabled:true}")
+    private boolean enabled;
+
+    // Assumed body size for chunked requests without a Content-Length
+    @Value("${cipher.admission.unknown-length-bytes:16777216}")
+    private long unknownLengthBytes;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || !"POST".equals(request.getMethod())
+                || !(path.startsWith("/api/encrypt") || path.startsWith("/api/decrypt"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long length = request.getContentLengthLong();
+        long blocks = ((length < 0) ? unknownLengthBytes : length) / 16 + 1;
+        HttpServletRequest admitted = request;
+        int rounds;
+        if (request.getRequestURI().startsWith("/api/encrypt")) {
+            rounds = AVERAGE_ROUNDS;
+        } else if (request.getRequestURI().equals("/api/decrypt/stream")) {
+            rounds = roundsOfKey(request.getHeader("X-Encryption-Key"));
+        } else if (request.getRequestURI().equals("/api/decrypt/binary")) {
+            byte[] header = request.getInputStream().readNBytes(BinaryFrame.HEADER_LENGTH);
+            rounds = (header.length == BinaryFrame.HEADER_LENGTH) ? roundsOf(header[18]) : 1;
+            admitted = new ReplayedRequest(request, header);
+        } else {
+            rounds = MAX_ROUNDS;
+        }
+
+        long cost = blocks * rounds;
+        AdmissionService.Ticket ticket;
+        try {
+            ticket = admissionService.tryAdmit(cost);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ticket = null;
+        }
+        if (ticket == null) {
+            long retryAfter = admissionService.retryAfterSeconds(cost);
+            log.debug("Shedding {} with cost {}, retry after {}s", request.getRequestURI(), cost, retryAfter);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Cipher capacity exhausted");
+            return;
+        }
+
+        boolean async = false;
+        try {
+            chain.doFilter(admitted, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(ticket));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                ticket.release();
+            }
+        }
+    }
+
+    // Unreadable keys are left to the controller to reject; they cost one round here
+    private static int roundsOfKey(String hexKey) {
+        if (hexKey == null || hexKey.length() < 2) {
+            return 1;
+        }
+        int high = Character.digit(hexKey.charAt(0), 16);
+        int low = Character.digit(hexKey.charAt(1), 16);
+        return (high < 0 || low < 0) ? 1 : roundsOf((byte) (high << 4 | low));
+    }
+
+    // A zero-round key still pays for the substitution and CBC passes
+    private static int roundsOf(byte roundByte) {
+        return Math.max(Byte.toUnsignedInt(roundByte), 1);
+    }
+
+    // Serves the header bytes read for the estimate back ahead of the rest of the body
+    private static final class ReplayedRequest extends HttpServletRequestWrapper {
+
+        private final ServletInputStream body;
+
+        ReplayedRequest(HttpServletRequest request, byte[] head) throws IOException {
+            super(request);
+            ServletInputStream rest = request.getInputStream();
+            InputStream replayed = new SequenceInputStream(new ByteArrayInputStream(head), rest);
+            this.body = new ServletInputStream() {
+                @Override
+                public int read() throws IOException {
+                    return replayed.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    return replayed.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return rest.isFinished();
+                }
+
+                @Override
+                public boolean isReady() {
+                    return rest.isReady();
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    rest.setReadListener(listener);
+                }
+            };
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return body;
+        }
+    }
+
+    private record ReleasingListener(AdmissionService.Ticket ticket) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            ticket.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            ticket.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            ticket.release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
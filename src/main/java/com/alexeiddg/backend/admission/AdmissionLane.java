@@ -0,0 +1,78 @@
+package com.alexeiddg.backend.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A weighted work budget: requests hold their estimated cost while they run. A request costing more
+// than the whole budget is only let in when the lane is idle, so it runs alone instead of never
+final class AdmissionLane {
+
+    private final String name;
+    private final long budget;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long inFlight;
+
+    // EWMA of how long admitted requests hold the lane, for Retry-After
+    private volatile double averageNanos;
+
+    AdmissionLane(String name, long budget) {
+        this.name = name;
+        this.budget = budget;
+    }
+
+    String name() {
+        return name;
+    }
+
+    long budget() {
+        return budget;
+    }
+
+    long inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean tryAcquire(long cost, long maxWaitNanos) throws InterruptedException {
+        long remaining = maxWaitNanos;
+        lock.lock();
+        try {
+            while (!fits(cost)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight += cost;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(long cost, long heldNanos) {
+        lock.lock();
+        try {
+            inFlight -= cost;
+            averageNanos = (averageNanos == 0) ? heldNanos : 0.8 * averageNanos + 0.2 * heldNanos;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Roughly how long until the work in flight now has drained, at least a second
+    long retryAfterSeconds() {
+        return Math.clamp((long) Math.ceil(averageNanos / TimeUnit.SECONDS.toNanos(1)), 1, 60);
+    }
+
+    private boolean fits(long cost) {
+        return inFlight + cost <= budget || inFlight == 0;
+    }
+}
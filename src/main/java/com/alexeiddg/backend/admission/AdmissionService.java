@@ -0,0 +1,113 @@
+package com.alexeiddg.backend.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Admits cipher requests against two weighted budgets, in units of 16-byte blocks x rounds. Requests
+// up to small-threshold have a lane of their own (and may borrow from the large one), so a burst of
+// big payloads can fill the large lane without starving small requests
+@Service
+public class AdmissionService {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cipher.admission.small-threshold:1048576}")
+    private long smallThreshold;
+
+    @Value("${cipher.admission.small-budget:16777216}")
+    private long smallBudget;
+
+    @Value("${cipher.admission.large-budget:268435456}")
+    private long largeBudget;
+
+    // How long a request may wait for budget before it is shed
+    @Value("${cipher.admission.max-wait:20ms}")
+    private Duration maxWait;
+
+    private AdmissionLane small;
+    private AdmissionLane large;
+    private Counter smallAdmitted;
+    private Counter largeAdmitted;
+    private Counter smallShed;
+    private Counter largeShed;
+
+    // Held budget; released once, whichever of completion, error or timeout comes first
+    public final class Ticket {
+        private final AdmissionLane lane;
+        private final long cost;
+        private final long admittedAt = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Ticket(AdmissionLane lane, long cost) {
+            this.lane = lane;
+            this.cost = cost;
+        }
+
+        public String lane() {
+            return lane.name();
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                lane.release(cost, System.nanoTime() - admittedAt);
+            }
+        }
+    }
+
+    @PostConstruct
+    void initialize() {
+        small = new AdmissionLane("small", smallBudget);
+        large = new AdmissionLane("large", largeBudget);
+        smallAdmitted = counter("cipher.admission.admitted", small, "Requests admitted");
+        largeAdmitted = counter("cipher.admission.admitted", large, "Requests admitted");
+        smallShed = counter("cipher.admission.shed", small, "Requests rejected with 503");
+        largeShed = counter("cipher.admission.shed", large, "Requests rejected with 503");
+        for (AdmissionLane lane : new AdmissionLane[]{small, large}) {
+            Gauge.builder("cipher.admission.in-flight", lane, AdmissionLane::inFlight)
+                    .description("Estimated cost (blocks x rounds) of the requests being served")
+                    .tag("lane", lane.name())
+                    .register(meterRegistry);
+            Gauge.builder("cipher.admission.budget", lane, AdmissionLane::budget)
+                    .tag("lane", lane.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    // null when both lanes stay saturated for max-wait
+    public Ticket tryAdmit(long cost) throws InterruptedException {
+        if (cost <= smallThreshold) {
+            AdmissionLane lane = small.tryAcquire(cost, 0) ? small
+                    : large.tryAcquire(cost, 0) ? large
+                    : small.tryAcquire(cost, maxWait.toNanos()) ? small : null;
+            if (lane != null) {
+                smallAdmitted.increment();
+                return new Ticket(lane, cost);
+            }
+            smallShed.increment();
+            return null;
+        }
+        if (large.tryAcquire(cost, maxWait.toNanos())) {
+            largeAdmitted.increment();
+            return new Ticket(large, cost);
+        }
+        largeShed.increment();
+        return null;
+    }
+
+    public long retryAfterSeconds(long cost) {
+        return (cost <= smallThreshold) ? small.retryAfterSeconds() : large.retryAfterSeconds();
+    }
+
+    private Counter counter(String name, AdmissionLane lane, String description) {
+        return Counter.builder(name).description(description).tag("lane", lane.name()).register(meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.alexeiddg.backend.batch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter @Setter
+public class BatchManifest {
+    private String mode;
+    private String startedAt;
+    private long elapsedMillis;
+    private long totalInputBytes;
+    private double megabytesPerSecond;
+    private List<BatchManifestEntry> files;
+}
@@ -0,0 +1,23 @@
+package com.alexeiddg.backend.batch.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Paths are relative to the run's input and output roots so a manifest survives moving the tree
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter @Setter
+public class BatchManifestEntry {
+    private String source;
+    private String target;
+    private String clientKey;
+    private int rounds;
+    private long inputBytes;
+    private long outputBytes;
+    private long elapsedMillis;
+    private double megabytesPerSecond;
+    private String status;
+    private String error;
+}
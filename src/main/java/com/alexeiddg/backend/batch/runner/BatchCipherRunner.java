@@ -0,0 +1,165 @@
+package com.alexeiddg.backend.batch.runner;
+
+import com.alexeiddg.backend.batch.model.BatchManifest;
+import com.alexeiddg.backend.batch.model.BatchManifestEntry;
+import com.alexeiddg.backend.batch.service.FileCipherService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// Offline file/directory mode, e.g.
+//   java -jar app.jar --spring.main.web-application-type=none --cipher.batch.mode=encrypt
+//        --cipher.batch.input=/data/in --cipher.batch.output=/data/out
+// Decrypt runs read the keys from the encrypt run's manifest through --cipher.batch.keys
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "cipher.batch", name = "mode")
+public class BatchCipherRunner implements ApplicationRunner {
+
+    private static final String ENCRYPTED_SUFFIX = ".enc";
+
+    @Autowired
+    private FileCipherService fileCipherService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cipher.batch.mode}")
+    private String mode;
+
+    @Value("${cipher.batch.input}")
+    private Path input;
+
+    @Value("${cipher.batch.output}")
+    private Path output;
+
+    @Value("${cipher.batch.manifest:}")
+    private String manifest;
+
+    @Value("${cipher.batch.keys:}")
+    private String keys;
+
+    // 0 uses one worker per available processor
+    @Value("${cipher.batch.parallelism:0}")
+    private int parallelism;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        boolean encrypt = switch (mode) {
+            case "encrypt" -> true;
+            case "decrypt" -> false;
+            default -> throw new IllegalArgumentException("cipher.batch.mode must be encrypt or decrypt");
+        };
+
+        Path manifestPath = manifest.isEmpty() ? output.resolve("manifest.json") : Path.of(manifest);
+        Path inputRoot = Files.isDirectory(input) ? input.toAbsolutePath() : input.toAbsolutePath().getParent();
+        List<Path> files = listFiles(manifestPath);
+        Map<String, String> clientKeys = encrypt ? Map.of() : loadKeys();
+
+        List<Callable<BatchManifestEntry>> tasks = new ArrayList<>();
+        for (Path file : files) {
+            String sourceName = inputRoot.relativize(file.toAbsolutePath()).toString();
+            String targetName = encrypt ? sourceName + ENCRYPTED_SUFFIX
+                    : sourceName.endsWith(ENCRYPTED_SUFFIX) ? sourceName.substring(0, sourceName.length() - ENCRYPTED_SUFFIX.length())
+                    : sourceName + ".dec";
+            Path target = output.resolve(targetName);
+
+            tasks.add(() -> {
+                try {
+                    if (encrypt) {
+                        return fileCipherService.encryptFile(file, target, sourceName, targetName);
+                    }
+                    String clientKey = clientKeys.get(sourceName);
+                    if (clientKey == null) {
+                        throw new IllegalArgumentException("No key for " + sourceName + " in " + keys);
+                    }
+                    return fileCipherService.decryptFile(file, target, sourceName, targetName, clientKey);
+                } catch (Exception e) {
+                    log.error("Batch {} failed for {}", mode, file, e);
+                    return new BatchManifestEntry(sourceName, targetName, null, 0, 0, 0, 0, 0, "FAILED", e.getMessage());
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        List<BatchManifestEntry> entries = new ArrayList<>();
+        int workers = (parallelism > 0) ? parallelism : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newWorkStealingPool(workers);
+        try {
+            for (Future<BatchManifestEntry> future : pool.invokeAll(tasks)) {
+                entries.add(future.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        long totalBytes = entries.stream().mapToLong(BatchManifestEntry::getInputBytes).sum();
+        double megabytesPerSecond = (elapsedNanos > 0) ? totalBytes / 1e6 / (elapsedNanos / 1e9) : 0;
+        BatchManifest batchManifest = new BatchManifest(mode, Instant.now().toString(), elapsedNanos / 1_000_000,
+                totalBytes, megabytesPerSecond, entries);
+        Files.createDirectories(manifestPath.toAbsolutePath().getParent());
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(manifestPath.toFile(), batchManifest);
+
+        long failed = entries.stream().filter(entry -> !"OK".equals(entry.getStatus())).count();
+        log.info("Batch {}: {} files, {} bytes, {} MB/s, manifest at {}", mode, entries.size(), totalBytes,
+                String.format("%.1f", megabytesPerSecond), manifestPath);
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " of " + entries.size() + " files failed, see " + manifestPath);
+        }
+    }
+
+    // Skips this run's manifest and the keys manifest, which usually sits in the encrypted tree
+    private List<Path> listFiles(Path manifestPath) throws Exception {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+        Set<Path> excluded = new HashSet<>();
+        excluded.add(manifestPath.toAbsolutePath().normalize());
+        if (!keys.isEmpty()) {
+            excluded.add(Path.of(keys).toAbsolutePath().normalize());
+        }
+        try (Stream<Path> walk = Files.walk(input)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(path -> !excluded.contains(path.toAbsolutePath().normalize()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Keys from an earlier encrypt manifest, indexed by the encrypted file's relative path
+    private Map<String, String> loadKeys() throws Exception {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("cipher.batch.keys must point at the encrypt run's manifest");
+        }
+        BatchManifest keyManifest = objectMapper.readValue(Path.of(keys).toFile(), BatchManifest.class);
+        Map<String, String> clientKeys = new HashMap<>();
+        for (BatchManifestEntry entry : keyManifest.getFiles()) {
+            if (entry.getClientKey() != null) {
+                clientKeys.put(entry.getTarget(), entry.getClientKey());
+            }
+        }
+        return clientKeys;
+    }
+}
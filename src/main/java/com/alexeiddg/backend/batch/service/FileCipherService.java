@@ -0,0 +1,247 @@
+package com.alexeiddg.backend.batch.service;
+
+import com.alexeiddg.backend.batch.model.BatchManifestEntry;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.engine.SegmentEngine;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyGenService;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+
+// Encrypts/decrypts whole files through memory-mapped windows; each window is moved through the
+// engine one chunk at a time, so heap use is one chunk per file regardless of file size. In off-heap
+// mode the windows are mapped as MemorySegments and encrypted in place, with no chunk at all
+@Service
+public class FileCipherService {
+
+    @Autowired
+    private KeyGenService keyGenService;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private SegmentEngine segmentEngine;
+
+    // Both must be multiples of 16 so window and chunk boundaries fall on block boundaries
+    @Value("${cipher.batch.window-size:67108864}")
+    private long windowSize;
+
+    @Value("${cipher.batch.chunk-size:1048576}")
+    private int chunkSize;
+
+    @Value("${cipher.engine.off-heap.enabled:true}")
+    private boolean offHeapEnabled;
+
+    // A window or chunk ending mid-block would split a block across two engine calls
+    @PostConstruct
+    void validate() {
+        if (windowSize <= 0 || windowSize % 16 != 0) {
+            throw new IllegalArgumentException("cipher.batch.window-size must be a positive multiple of 16, was " + windowSize);
+        }
+        if (chunkSize <= 0 || chunkSize % 16 != 0) {
+            throw new IllegalArgumentException("cipher.batch.chunk-size must be a positive multiple of 16, was " + chunkSize);
+        }
+    }
+
+    public BatchManifestEntry encryptFile(Path source, Path target, String sourceName, String targetName)
+            throws IOException, NoSuchAlgorithmException {
+        long start = System.nanoTime();
+        KeyMatrix encryptionKey = keyGenService.generateKey();
+        String clientKey = encryptionKey.flattenToHex();
+        int rounds = Byte.toUnsignedInt(encryptionKey.matrix()[0][0]);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        if (offHeapEnabled) {
+            try (KeySchedule schedule = keyScheduleService.buildSchedule(encryptionKey)) {
+                long[] sizes = encryptMapped(source, target, schedule);
+                return entry(sourceName, targetName, clientKey, rounds, sizes[0], sizes[1], start);
+            }
+        }
+
+        byte[] chunk = new byte[chunkSize + 16];
+        long size;
+        long outputSize;
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(encryptionKey);
+             FileChannel in = FileChannel.open(source, READ);
+             FileChannel out = FileChannel.open(target, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            size = in.size();
+            outputSize = (size / 16 + 1) * 16;
+            byte[] chain = schedule.getIv().clone();
+
+            long position = 0;
+            do {
+                long windowLength = Math.min(windowSize, size - position);
+                boolean lastWindow = position + windowLength == size;
+                MappedByteBuffer input = in.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+                MappedByteBuffer output = out.map(FileChannel.MapMode.READ_WRITE, position,
+                        lastWindow ? outputSize - position : windowLength);
+
+                while (input.hasRemaining()) {
+                    int length = Math.min(chunkSize, input.remaining());
+                    input.get(chunk, 0, length);
+                    if (lastWindow && !input.hasRemaining()) {
+                        length = StringToBitstream.applyBlockPadding(chunk, length);
+                    }
+                    blockEngine.encryptChained(chunk, 0, length, schedule, chain);
+                    output.put(chunk, 0, length);
+                }
+                // Empty input: the padding block is the whole ciphertext
+                if (output.hasRemaining()) {
+                    int length = StringToBitstream.applyBlockPadding(chunk, 0);
+                    blockEngine.encryptChained(chunk, 0, length, schedule, chain);
+                    output.put(chunk, 0, length);
+                }
+                output.force();
+                position += windowLength;
+            } while (position < size);
+        } finally {
+            Arrays.fill(chunk, (byte) 0);
+        }
+
+        return entry(sourceName, targetName, clientKey, rounds, size, outputSize, start);
+    }
+
+    public BatchManifestEntry decryptFile(Path source, Path target, String sourceName, String targetName, String clientKey)
+            throws IOException, NoSuchAlgorithmException {
+        long start = System.nanoTime();
+        KeyMatrix decryptionKey = KeyMatrix.fromHex(clientKey);
+        int rounds = Byte.toUnsignedInt(decryptionKey.matrix()[0][0]);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        if (offHeapEnabled) {
+            try (KeySchedule schedule = keyScheduleService.buildSchedule(decryptionKey)) {
+                long[] sizes = decryptMapped(source, target, schedule);
+                return entry(sourceName, targetName, clientKey, rounds, sizes[0], sizes[1], start);
+            }
+        }
+
+        byte[] chunk = new byte[chunkSize];
+        long size;
+        long outputSize = 0;
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(decryptionKey);
+             FileChannel in = FileChannel.open(source, READ);
+             FileChannel out = FileChannel.open(target, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            size = in.size();
+            if (size == 0 || size % 16 != 0) {
+                throw new IllegalArgumentException("Ciphertext length must be a non-zero multiple of 16");
+            }
+            byte[] chain = schedule.getIv().clone();
+
+            for (long position = 0; position < size; ) {
+                long windowLength = Math.min(windowSize, size - position);
+                boolean lastWindow = position + windowLength == size;
+                MappedByteBuffer input = in.map(FileChannel.MapMode.READ_ONLY, position, windowLength);
+                // The padded final block is written through the channel once its real length is known
+                MappedByteBuffer output = out.map(FileChannel.MapMode.READ_WRITE, position,
+                        lastWindow ? windowLength - 16 : windowLength);
+
+                while (input.hasRemaining()) {
+                    int length = Math.min(chunkSize, input.remaining());
+                    input.get(chunk, 0, length);
+                    blockEngine.decryptChained(chunk, 0, length, schedule, chain);
+                    if (lastWindow && !input.hasRemaining()) {
+                        output.put(chunk, 0, length - 16);
+                        int tail = StringToBitstream.unpaddedLength(chunk, length - 16, 16);
+                        out.write(ByteBuffer.wrap(chunk, length - 16, tail), size - 16);
+                        outputSize = size - 16 + tail;
+                    } else {
+                        output.put(chunk, 0, length);
+                    }
+                }
+                output.force();
+                position += windowLength;
+            }
+        } finally {
+            Arrays.fill(chunk, (byte) 0);
+        }
+
+        return entry(sourceName, targetName, clientKey, rounds, size, outputSize, start);
+    }
+
+    // Each window gets its own arena, so it is unmapped as soon as it has been forced to disk;
+    // returns {input size, output size}
+    private long[] encryptMapped(Path source, Path target, KeySchedule schedule) throws IOException {
+        try (FileChannel in = FileChannel.open(source, READ);
+             FileChannel out = FileChannel.open(target, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            long size = in.size();
+            long outputSize = (size / 16 + 1) * 16;
+            byte[] chain = schedule.getIv().clone();
+
+            long position = 0;
+            do {
+                long windowLength = Math.min(windowSize, size - position);
+                boolean lastWindow = position + windowLength == size;
+                try (Arena window = Arena.ofShared()) {
+                    MemorySegment input = in.map(FileChannel.MapMode.READ_ONLY, position, windowLength, window);
+                    MemorySegment output = out.map(FileChannel.MapMode.READ_WRITE, position,
+                            lastWindow ? outputSize - position : windowLength, window);
+                    MemorySegment.copy(input, 0, output, 0, windowLength);
+                    long length = lastWindow ? StringToBitstream.applyBlockPadding(output, windowLength) : windowLength;
+                    segmentEngine.encryptChained(output.asSlice(0, length), schedule, chain);
+                    output.force();
+                }
+                position += windowLength;
+            } while (position < size);
+            return new long[]{size, outputSize};
+        }
+    }
+
+    // The output is mapped at the ciphertext's size and truncated to the unpadded length at the end
+    private long[] decryptMapped(Path source, Path target, KeySchedule schedule) throws IOException {
+        try (FileChannel in = FileChannel.open(source, READ);
+             FileChannel out = FileChannel.open(target, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            long size = in.size();
+            if (size == 0 || size % 16 != 0) {
+                throw new IllegalArgumentException("Ciphertext length must be a non-zero multiple of 16");
+            }
+            byte[] chain = schedule.getIv().clone();
+            long outputSize = 0;
+
+            for (long position = 0; position < size; ) {
+                long windowLength = Math.min(windowSize, size - position);
+                try (Arena window = Arena.ofShared()) {
+                    MemorySegment input = in.map(FileChannel.MapMode.READ_ONLY, position, windowLength, window);
+                    MemorySegment output = out.map(FileChannel.MapMode.READ_WRITE, position, windowLength, window);
+                    MemorySegment.copy(input, 0, output, 0, windowLength);
+                    segmentEngine.decryptChained(output, schedule, chain);
+                    if (position + windowLength == size) {
+                        outputSize = position + StringToBitstream.unpaddedLength(output, windowLength);
+                    }
+                    output.force();
+                }
+                position += windowLength;
+            }
+            out.truncate(outputSize);
+            return new long[]{size, outputSize};
+        }
+    }
+
+    private BatchManifestEntry entry(String sourceName, String targetName, String clientKey, int rounds,
+                                     long inputBytes, long outputBytes, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        double megabytesPerSecond = (elapsedNanos > 0) ? inputBytes / 1e6 / (elapsedNanos / 1e9) : 0;
+        return new BatchManifestEntry(sourceName, targetName, clientKey, rounds, inputBytes, outputBytes,
+                elapsedNanos / 1_000_000, megabytesPerSecond, "OK", null);
+    }
+}
@@ -0,0 +1,138 @@
+package com.alexeiddg.backend.channel;
+
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.service.KeyGenService;
+import com.alexeiddg.backend.keygen.service.KeyScheduleCache;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Binary frames, first byte is the opcode:
+//   client 0x01 [key?]  encrypt mode, optional 16-byte key (generated when absent); reply 0x01 key
+//   client 0x02 key     decrypt mode with the 16-byte key;                          reply 0x02
+//   client 0x10 bytes   next plaintext/ciphertext bytes;                            reply 0x10 processed bytes
+//   client 0x11         end of message, chain restarts from the IV;                 reply 0x11 final bytes
+//   server 0x7F text    error, the session stays open
+// Frames are handled one at a time per session and every reply is sent before the next frame is read,
+// so a slow reader stalls its producer through TCP flow control instead of growing server buffers
+@Slf4j
+@Component
+public class CipherChannelHandler extends BinaryWebSocketHandler {
+
+    static final byte ENCRYPT = 0x01;
+    static final byte DECRYPT = 0x02;
+    static final byte DATA = 0x10;
+    static final byte FINISH = 0x11;
+    static final byte ERROR = 0x7F;
+
+    private static final String SESSION_STATE = "cipherChannelSession";
+
+    @Autowired
+    private KeyGenService keyGenService;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private KeyScheduleCache keyScheduleCache;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Value("${cipher.websocket.max-frame-size:1048576}")
+    private int maxFrameSize;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        session.setBinaryMessageSizeLimit(maxFrameSize);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        ByteBuffer payload = message.getPayload();
+        try {
+            if (!payload.hasRemaining()) {
+                throw new IllegalArgumentException("Empty frame");
+            }
+            byte opcode = payload.get();
+            switch (opcode) {
+                case ENCRYPT -> send(session, ENCRYPT, openEncrypt(session, payload));
+                case DECRYPT -> send(session, DECRYPT, openDecrypt(session, payload));
+                case DATA -> send(session, DATA, state(session).update(payload));
+                case FINISH -> send(session, FINISH, state(session).finish());
+                default -> throw new IllegalArgumentException("Unknown opcode " + opcode);
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            send(session, ERROR, String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        CipherChannelSession state = (CipherChannelSession) session.getAttributes().remove(SESSION_STATE);
+        if (state != null) {
+            state.close();
+        }
+    }
+
+    private byte[] openEncrypt(WebSocketSession session, ByteBuffer payload) throws Exception {
+        KeyMatrix encryptionKey;
+        if (payload.remaining() == 0) {
+            encryptionKey = keyGenService.generateKey();
+            replaceState(session, new CipherChannelSession(blockEngine, keyScheduleService.buildSchedule(encryptionKey), true));
+        } else {
+            encryptionKey = readKey(payload);
+            replaceState(session, new CipherChannelSession(blockEngine, keyScheduleCache.getSchedule(encryptionKey), true));
+        }
+        return encryptionKey.flattenMatrix();
+    }
+
+    private byte[] openDecrypt(WebSocketSession session, ByteBuffer payload) throws Exception {
+        KeyMatrix decryptionKey = readKey(payload);
+        replaceState(session, new CipherChannelSession(blockEngine, keyScheduleCache.getSchedule(decryptionKey), false));
+        return new byte[0];
+    }
+
+    private KeyMatrix readKey(ByteBuffer payload) {
+        if (payload.remaining() != 16) {
+            throw new IllegalArgumentException("Key must be 16 bytes");
+        }
+        byte[] key = new byte[16];
+        payload.get(key);
+        return KeyMatrix.rebuildMatrix(key);
+    }
+
+    // Renegotiating drops any unfinished message under the previous key
+    private void replaceState(WebSocketSession session, CipherChannelSession state) {
+        CipherChannelSession previous = (CipherChannelSession) session.getAttributes().put(SESSION_STATE, state);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private CipherChannelSession state(WebSocketSession session) {
+        CipherChannelSession state = (CipherChannelSession) session.getAttributes().get(SESSION_STATE);
+        if (state == null) {
+            throw new IllegalStateException("Send an encrypt or decrypt frame first");
+        }
+        return state;
+    }
+
+    private void send(WebSocketSession session, byte opcode, byte[] body) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(1 + body.length);
+        frame.put(opcode).put(body).flip();
+        session.sendMessage(new BinaryMessage(frame));
+    }
+}
@@ -0,0 +1,85 @@
+package com.alexeiddg.backend.channel;
+
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Per-connection cipher state: one leased schedule, the CBC chain, and the bytes that can't leave yet
+// (a partial block when encrypting, the final ciphertext block when decrypting since it carries the padding)
+public class CipherChannelSession implements AutoCloseable {
+
+    private final BlockEngine blockEngine;
+    private final KeySchedule schedule;
+    private final boolean encrypt;
+    private final byte[] chain;
+    private final byte[] pending = new byte[32];
+    private int pendingLength;
+
+    public CipherChannelSession(BlockEngine blockEngine, KeySchedule schedule, boolean encrypt) {
+        this.blockEngine = blockEngine;
+        this.schedule = schedule;
+        this.encrypt = encrypt;
+        this.chain = schedule.getIv().clone();
+    }
+
+    public boolean isEncrypt() {
+        return encrypt;
+    }
+
+    // Returns every block that is complete and, when decrypting, known not to be the last one
+    public byte[] update(ByteBuffer payload) {
+        int total = pendingLength + payload.remaining();
+        int ready = total - total % 16;
+        if (!encrypt && total % 16 == 0) {
+            ready -= 16;
+        }
+        if (ready <= 0) {
+            payload.get(pending, pendingLength, payload.remaining());
+            pendingLength = total;
+            return new byte[0];
+        }
+
+        byte[] blocks = new byte[ready];
+        System.arraycopy(pending, 0, blocks, 0, pendingLength);
+        payload.get(blocks, pendingLength, ready - pendingLength);
+        pendingLength = payload.remaining();
+        payload.get(pending, 0, pendingLength);
+
+        if (encrypt) {
+            blockEngine.encryptChained(blocks, 0, ready, schedule, chain);
+        } else {
+            blockEngine.decryptChained(blocks, 0, ready, schedule, chain);
+        }
+        return blocks;
+    }
+
+    // Ends the current message and restarts the chain, so each message decrypts on its own with the session key
+    public byte[] finish() {
+        try {
+            if (encrypt) {
+                int length = StringToBitstream.applyBlockPadding(pending, pendingLength);
+                blockEngine.encryptChained(pending, 0, length, schedule, chain);
+                return Arrays.copyOf(pending, length);
+            }
+            if (pendingLength != 16) {
+                throw new IllegalArgumentException("Ciphertext length must be a non-zero multiple of 16");
+            }
+            blockEngine.decryptChained(pending, 0, 16, schedule, chain);
+            return Arrays.copyOf(pending, StringToBitstream.unpaddedLength(pending, 0, 16));
+        } finally {
+            Arrays.fill(pending, (byte) 0);
+            pendingLength = 0;
+            System.arraycopy(schedule.getIv(), 0, chain, 0, 16);
+        }
+    }
+
+    @Override
+    public void close() {
+        Arrays.fill(pending, (byte) 0);
+        Arrays.fill(chain, (byte) 0);
+        schedule.close();
+    }
+}
@@ -0,0 +1,28 @@
+package com.alexeiddg.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ExecutorConfig {
+
+    // Bounded pool of platform threads for CPU-bound cipher work; request threads (virtual when
+    // spring.threads.virtual.enabled is set) hand off to it and park. 0 uses one thread per available processor.
+    // At most queue-capacity tasks wait for a thread; beyond that submissions are rejected (503, see
+    // CipherExceptionHandler) instead of queueing without limit
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService cipherExecutor(@Value("${cipher.executor.pool-size:0}") int poolSize,
+                                          @Value("${cipher.executor.queue-capacity:16384}") int queueCapacity) {
+        int threads = (poolSize > 0) ? poolSize : Runtime.getRuntime().availableProcessors();
+        ThreadFactory threadFactory = Thread.ofPlatform().name("cipher-", 0).daemon(true).factory();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
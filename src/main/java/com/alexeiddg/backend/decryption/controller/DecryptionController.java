@@ -1,12 +1,26 @@
 package com.alexeiddg.backend.decryption.controller;
 
+import com.alexeiddg.backend.decryption.model.DecryptedRange;
+import com.alexeiddg.backend.decryption.model.DecryptionRangeRequest;
 import com.alexeiddg.backend.decryption.model.DecryptionRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import com.alexeiddg.backend.util.BatchResponseWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.decryption.service.RangeDecryptionService;
 
 @RestController
 @CrossOrigin(origins = "*", allowedHeaders = "*")
@@ -16,9 +30,82 @@ public class DecryptionController {
     @Autowired
     private DecryptionService keyDecryptionService;
 
+    @Autowired
+    private RangeDecryptionService rangeDecryptionService;
+
+    @Autowired
+    private BatchResponseWriter batchResponseWriter;
+
+    @Value("${cipher.batch-api.max-items:10000}")
+    private int maxBatchItems;
+
     @PostMapping("/decrypt")
-    public ResponseEntity<String> thing(@RequestBody DecryptionRequest request) throws Exception {
-        String response = keyDecryptionService.decrypt(request.getClientKey(), request.getCipherText());
-        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(response);
+    public CompletableFuture<ResponseEntity<String>> thing(@RequestBody DecryptionRequest request) {
+        return keyDecryptionService.decryptAsync(request.getClientKey(), request.getCipherText())
+                .thenApply(response -> ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(response));
+    }
+
+    // Raw ciphertext in, raw plaintext out, chunked both ways
+    @PostMapping("/decrypt/stream")
+    public void decryptStream(@RequestHeader("X-Encryption-Key") String clientKey,
+                              HttpServletRequest request, HttpServletResponse response) throws Exception {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        keyDecryptionService.decryptStream(clientKey, request.getInputStream(), response.getOutputStream());
+    }
+
+    // Binary frame from /encrypt/binary in, raw plaintext out
+    @PostMapping(value = "/decrypt/binary", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void decryptBinary(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        keyDecryptionService.decryptFrame(request.getInputStream(), request.getContentLengthLong(), response.getOutputStream());
+    }
+
+    // Plaintext bytes [offset, offset + length) of an /encrypt ciphertext, as 206 with a Content-Range
+    @PostMapping(value = "/decrypt/range", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> decryptRange(@RequestBody DecryptionRangeRequest request) throws Exception {
+        return partialContent(rangeDecryptionService.decryptRange(request.getClientKey(), request.getCipherText(),
+                request.getOffset(), request.getLength()));
+    }
+
+    // The same for a raw ciphertext file (/encrypt/stream, batch mode) under cipher.range.storage-root; only the
+    // blocks around the range are read, so nothing scales with the file's size
+    @GetMapping(value = "/decrypt/range/file", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> decryptFileRange(@RequestHeader("X-Encryption-Key") String clientKey,
+                                                   @RequestParam String path, @RequestParam long offset,
+                                                   @RequestParam int length) throws Exception {
+        return partialContent(rangeDecryptionService.decryptFileRange(rangeDecryptionService.storedFile(path),
+                clientKey, offset, length));
+    }
+
+    // And for a stored /encrypt/binary frame, which carries its own key
+    @GetMapping(value = "/decrypt/range/frame", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> decryptFrameRange(@RequestParam String path, @RequestParam long offset,
+                                                    @RequestParam int length) throws Exception {
+        return partialContent(rangeDecryptionService.decryptFrameRange(rangeDecryptionService.storedFile(path),
+                offset, length));
+    }
+
+    // JSON array in, JSON array of per-item results out, written in request order as items complete
+    @PostMapping("/decrypt/batch")
+    public ResponseEntity<StreamingResponseBody> batch(@RequestBody List<DecryptionRequest> requests) {
+        if (requests.size() > maxBatchItems) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "At most " + maxBatchItems + " items per batch");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(batchResponseWriter.inOrder(keyDecryptionService.decryptBatch(requests)));
+    }
+
+    // An empty range (zero length, or starting at the end) is not satisfiable: 416 with the plaintext length (RFC 9110)
+    private ResponseEntity<byte[]> partialContent(DecryptedRange range) {
+        if (range.data().length == 0) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + range.plaintextLength())
+                    .build();
+        }
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + range.offset() + "-"
+                        + (range.offset() + range.data().length - 1) + "/" + range.plaintextLength())
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(range.data());
     }
 }
@@ -0,0 +1,5 @@
+package com.alexeiddg.backend.decryption.model;
+
+// Plaintext bytes [offset, offset + data.length) out of plaintextLength
+public record DecryptedRange(long offset, byte[] data, long plaintextLength) {
+}
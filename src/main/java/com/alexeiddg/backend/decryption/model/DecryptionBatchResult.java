@@ -0,0 +1,23 @@
+package com.alexeiddg.backend.decryption.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@AllArgsConstructor @Getter @Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DecryptionBatchResult {
+    private int index;
+    private String status;
+    private String text;
+    private String error;
+
+    public static DecryptionBatchResult ok(int index, String text) {
+        return new DecryptionBatchResult(index, "OK", text, null);
+    }
+
+    public static DecryptionBatchResult failed(int index, Exception e) {
+        return new DecryptionBatchResult(index, "ERROR", null, String.valueOf(e.getMessage()));
+    }
+}
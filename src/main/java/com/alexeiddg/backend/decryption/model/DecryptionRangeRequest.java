@@ -0,0 +1,16 @@
+package com.alexeiddg.backend.decryption.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter @Setter
+public class DecryptionRangeRequest {
+    String cipherText;
+    String clientKey;
+    long offset;
+    int length;
+}
@@ -0,0 +1,62 @@
+package com.alexeiddg.backend.decryption.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Base64;
+
+// Random access to a ciphertext's blocks; positions count from the first block, past any header
+public interface CiphertextSource {
+
+    long length();
+
+    void read(long position, byte[] buffer, int offset, int length) throws IOException;
+
+    // Blocks at [start, start + length) of a file; positional reads, so the channel's position is untouched
+    static CiphertextSource of(FileChannel channel, long start, long length) {
+        return new CiphertextSource() {
+            @Override
+            public long length() {
+                return length;
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int count) throws IOException {
+                ByteBuffer target = ByteBuffer.wrap(buffer, offset, count);
+                while (target.hasRemaining()) {
+                    if (channel.read(target, start + position + target.position() - offset) < 0) {
+                        throw new EOFException("Ciphertext ends before its blocks do");
+                    }
+                }
+            }
+        };
+    }
+
+    // The Base64url text of /api/encrypt, blocks after headerLength decoded bytes; each read only
+    // decodes the 4-character groups it covers
+    static CiphertextSource ofBase64(String cipherText, int headerLength) {
+        int chars = cipherText.length();
+        int padding = (chars % 4 != 0) ? 0 : cipherText.endsWith("==") ? 2 : cipherText.endsWith("=") ? 1 : 0;
+        long decodedLength = (long) chars / 4 * 3 + ((chars % 4 == 0) ? 0 : chars % 4 - 1) - padding;
+
+        return new CiphertextSource() {
+            @Override
+            public long length() {
+                return decodedLength - headerLength;
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int count) throws IOException {
+                long start = headerLength + position;
+                if (start + count > decodedLength) {
+                    throw new EOFException("Ciphertext ends before its blocks do");
+                }
+                int firstChar = (int) (start / 3 * 4);
+                int lastChar = (int) Math.min(chars, (start + count + 2) / 3 * 4);
+                byte[] decoded = Base64.getUrlDecoder().decode(cipherText.substring(firstChar, lastChar));
+                System.arraycopy(decoded, (int) (start % 3), buffer, offset, count);
+            }
+        };
+    }
+}
@@ -0,0 +1,368 @@
+package com.alexeiddg.backend.decryption.service;
+
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Plaintexts of recently decrypted (key, ciphertext) pairs, keyed by a SHA-256 digest of both, so a
+// client polling the same ciphertext skips the rounds. W-TinyLFU layout bounded by estimated bytes:
+// new entries land in a small LRU window; when it overflows, its eldest entry only enters the main
+// SLRU (probation, then protected on a second hit) if a frequency sketch has seen it more often than
+// the entry it would evict. Evicted, expired and rejected plaintexts are zeroed; a sweeper thread
+// removes expired entries that are never looked up again, so none outlives the TTL by more than a tenth
+@Service
+public class DecryptionResultCache {
+
+    public enum Endpoint { DECRYPT, BATCH, BINARY }
+
+    // Rough per-entry cost of the digest, entry and map node on top of the plaintext
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final byte TEXT_DIGEST = 1;
+    private static final byte FRAME_DIGEST = 2;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cipher.result-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cipher.result-cache.endpoints:decrypt,batch,binary}")
+    private List<String> endpointNames;
+
+    @Value("${cipher.result-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${cipher.result-cache.ttl:5m}")
+    private Duration ttl;
+
+    private final Set<Endpoint> endpoints = EnumSet.noneOf(Endpoint.class);
+
+    private final LinkedHashMap<ByteBuffer, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ByteBuffer, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ByteBuffer, Entry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+    private long windowMax;
+    private long mainMax;
+    private long protectedMax;
+    private FrequencySketch sketch;
+    private Thread sweeper;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    private record Entry(ByteBuffer key, byte[] plaintext, long cipherLength, long expiresAt) {
+
+        long size() {
+            return plaintext.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long bytes, long bytesSaved) {
+    }
+
+    @PostConstruct
+    void initialize() {
+        for (String name : endpointNames) {
+            if (!name.isBlank()) {
+                endpoints.add(Endpoint.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        // 1% window, the rest split 20/80 between probation and protected, as in W-TinyLFU
+        windowMax = maxBytes / 100;
+        mainMax = maxBytes - windowMax;
+        protectedMax = mainMax * 4 / 5;
+        sketch = new FrequencySketch(Integer.highestOneBit((int) Math.clamp(maxBytes / 1024, 1024, 1 << 20)));
+
+        Gauge.builder("cipher.result-cache.hit-ratio", this, DecryptionResultCache::hitRatio)
+                .description("Share of cache lookups answered without decrypting")
+                .register(meterRegistry);
+        Gauge.builder("cipher.result-cache.bytes", this, cache -> cache.stats().bytes())
+                .description("Estimated bytes held by cached plaintexts")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.result-cache.hits", hits, LongAdder::sum)
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.result-cache.misses", misses, LongAdder::sum)
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.result-cache.evictions", evictions, LongAdder::sum)
+                .description("Entries dropped for space or age, or refused admission")
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.result-cache.bytes-saved", bytesSaved, LongAdder::sum)
+                .description("Ciphertext bytes that cache hits did not have to decrypt")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (enabled) {
+            sweeper = Thread.ofPlatform().name("result-cache-sweeper").daemon(true).start(this::sweepLoop);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sweeper != null) {
+            sweeper.interrupt();
+        }
+    }
+
+    public boolean isEnabled(Endpoint endpoint) {
+        return enabled && endpoints.contains(endpoint);
+    }
+
+    // Base64 ciphertexts are hashed as sent; another encoding of the same bytes is only a miss
+    public static byte[] textDigest(KeyMatrix key, String cipherText) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] keyBytes = key.flattenMatrix();
+        digest.update(TEXT_DIGEST);
+        digest.update(keyBytes);
+        Arrays.fill(keyBytes, (byte) 0);
+        digest.update(cipherText.getBytes(StandardCharsets.US_ASCII));
+        return digest.digest();
+    }
+
+    // Binary frames carry their own key
+    public static byte[] frameDigest(byte[] frame, int length) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(FRAME_DIGEST);
+        digest.update(frame, 0, length);
+        return digest.digest();
+    }
+
+    // A copy of the cached plaintext, or null; the caller owns (and should zero) the copy
+    public byte[] get(byte[] digest) {
+        ByteBuffer lookup = ByteBuffer.wrap(digest);
+        long now = System.nanoTime();
+        synchronized (this) {
+            sketch.increment(lookup);
+            Entry entry = window.get(lookup);
+            if (entry == null) {
+                entry = probation.get(lookup);
+                if (entry == null) {
+                    entry = protectedEntries.get(lookup);
+                } else if (entry.expiresAt() - now > 0) {
+                    promote(entry);
+                }
+            }
+            if (entry == null || entry.expiresAt() - now <= 0) {
+                if (entry != null) {
+                    remove(lookup);
+                }
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            bytesSaved.add(entry.cipherLength());
+            return entry.plaintext().clone();
+        }
+    }
+
+    // Copies plaintext[offset, offset + length) into the window
+    public void put(byte[] digest, byte[] plaintext, int offset, int length, long cipherLength) {
+        if (length + ENTRY_OVERHEAD > mainMax) {
+            return;
+        }
+        ByteBuffer key = ByteBuffer.wrap(digest.clone());
+        Entry entry = new Entry(key, Arrays.copyOfRange(plaintext, offset, offset + length), cipherLength,
+                System.nanoTime() + ttl.toNanos());
+        synchronized (this) {
+            remove(key);
+            window.put(key, entry);
+            windowBytes += entry.size();
+            while (windowBytes > windowMax && !window.isEmpty()) {
+                Entry candidate = pollEldest(window);
+                windowBytes -= candidate.size();
+                admit(candidate);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        for (LinkedHashMap<ByteBuffer, Entry> segment : List.of(window, probation, protectedEntries)) {
+            segment.values().forEach(entry -> Arrays.fill(entry.plaintext(), (byte) 0));
+            segment.clear();
+        }
+        windowBytes = 0;
+        probationBytes = 0;
+        protectedBytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), window.size() + probation.size() + protectedEntries.size(),
+                windowBytes + probationBytes + protectedBytes, bytesSaved.sum());
+    }
+
+    private void sweepLoop() {
+        long interval = Math.clamp(ttl.toMillis() / 10, 50, 10_000);
+        try {
+            while (true) {
+                Thread.sleep(interval);
+                sweep();
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    // Access order says nothing about age (a recent hit on an old entry moves it to the tail), so every
+    // entry is checked
+    synchronized void sweep() {
+        long now = System.nanoTime();
+        windowBytes -= sweep(window, now);
+        probationBytes -= sweep(probation, now);
+        protectedBytes -= sweep(protectedEntries, now);
+    }
+
+    private long sweep(LinkedHashMap<ByteBuffer, Entry> segment, long now) {
+        long removed = 0;
+        Iterator<Entry> entries = segment.values().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (entry.expiresAt() - now <= 0) {
+                entries.remove();
+                removed += entry.size();
+                discard(entry);
+            }
+        }
+        return removed;
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return (lookups == 0) ? 0 : (double) hitCount / lookups;
+    }
+
+    // The window's eldest entry against the main space's eldest victims, probation first
+    private void admit(Entry candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key());
+        long now = System.nanoTime();
+        while (probationBytes + protectedBytes + candidate.size() > mainMax) {
+            boolean fromProbation = !probation.isEmpty();
+            LinkedHashMap<ByteBuffer, Entry> victims = fromProbation ? probation : protectedEntries;
+            Entry victim = victims.values().iterator().next();
+            if (victim.expiresAt() - now > 0 && candidateFrequency <= sketch.frequency(victim.key())) {
+                discard(candidate);
+                return;
+            }
+            victims.remove(victim.key());
+            if (fromProbation) {
+                probationBytes -= victim.size();
+            } else {
+                protectedBytes -= victim.size();
+            }
+            discard(victim);
+        }
+        probation.put(candidate.key(), candidate);
+        probationBytes += candidate.size();
+    }
+
+    // A second hit moves a probation entry to protected, demoting protected's eldest when it overflows
+    private void promote(Entry entry) {
+        probation.remove(entry.key());
+        probationBytes -= entry.size();
+        protectedEntries.put(entry.key(), entry);
+        protectedBytes += entry.size();
+        while (protectedBytes > protectedMax) {
+            Entry demoted = pollEldest(protectedEntries);
+            protectedBytes -= demoted.size();
+            probation.put(demoted.key(), demoted);
+            probationBytes += demoted.size();
+        }
+    }
+
+    private void remove(ByteBuffer key) {
+        Entry entry;
+        if ((entry = window.remove(key)) != null) {
+            windowBytes -= entry.size();
+        } else if ((entry = probation.remove(key)) != null) {
+            probationBytes -= entry.size();
+        } else if ((entry = protectedEntries.remove(key)) != null) {
+            protectedBytes -= entry.size();
+        }
+        if (entry != null) {
+            discard(entry);
+        }
+    }
+
+    private void discard(Entry entry) {
+        Arrays.fill(entry.plaintext(), (byte) 0);
+        evictions.increment();
+    }
+
+    private static Entry pollEldest(LinkedHashMap<ByteBuffer, Entry> segment) {
+        Iterator<Map.Entry<ByteBuffer, Entry>> iterator = segment.entrySet().iterator();
+        Entry eldest = iterator.next().getValue();
+        iterator.remove();
+        return eldest;
+    }
+
+    // Count-min sketch with four rows of counters saturating at 15, indexed by four ints of the digest
+    // (already uniformly distributed). Every counter is halved after 10x width increments, so entries
+    // that were popular a while ago stop outranking what is popular now
+    private static final class FrequencySketch {
+
+        private final byte[][] rows = new byte[4][];
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int width) {
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width];
+            }
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        void increment(ByteBuffer digest) {
+            for (int i = 0; i < rows.length; i++) {
+                int index = digest.getInt(i * 4) & mask;
+                if (rows[i][index] < 15) {
+                    rows[i][index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (byte[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(ByteBuffer digest) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < rows.length; i++) {
+                frequency = Math.min(frequency, rows[i][digest.getInt(i * 4) & mask]);
+            }
+            return frequency;
+        }
+    }
+}
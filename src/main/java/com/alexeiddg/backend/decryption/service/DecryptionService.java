@@ -1,95 +1,309 @@
 package com.alexeiddg.backend.decryption.service;
 
-import com.alexeiddg.backend.encryption.service.*;
-import com.alexeiddg.backend.encryption.util.CipherTextGenerator;
+import com.alexeiddg.backend.decryption.model.DecryptionBatchResult;
+import com.alexeiddg.backend.decryption.model.DecryptionRequest;
+import com.alexeiddg.backend.decryption.service.DecryptionResultCache.Endpoint;
+import com.alexeiddg.backend.decryption.stream.DecryptingInputStream;
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.service.CompressionService;
+import com.alexeiddg.backend.encryption.engine.BatchingEngine;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.engine.SegmentEngine;
 import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleCache;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.metrics.CipherMetrics.Stage;
+import com.alexeiddg.backend.util.CipherFutures;
+import com.alexeiddg.backend.util.SegmentStreams;
 import com.alexeiddg.backend.util.StringToBitstream;
-import com.alexeiddg.backend.util.HashService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-
-import static com.alexeiddg.backend.encryption.service.SBoxService.generateInverseSBox;
-import static com.alexeiddg.backend.encryption.service.SBoxService.generateSBox;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 @Service
 public class DecryptionService {
 
     @Autowired
-    private SBoxService sBoxService;
+    private KeyScheduleCache keyScheduleCache;
+
     @Autowired
-    private TransposeService transposeService;
+    private BlockEngine blockEngine;
 
     @Autowired
-    private TransformService transformService;
+    private ExecutorService cipherExecutor;
 
     @Autowired
-    private XORService xorService;
+    private CipherMetrics cipherMetrics;
 
     @Autowired
-    private HashService hashService;
+    private CompressionService compressionService;
 
     @Autowired
-    private CBCService cbcService;
+    private SegmentEngine segmentEngine;
+
+    @Autowired
+    private DecryptionResultCache resultCache;
+
     @Autowired
-    private CipherTextGenerator cipherTextGenerator;
+    private BatchingEngine batchingEngine;
+
+    @Value("${cipher.binary.max-payload-size:67108864}")
+    private int maxFrameSize;
+
+    @Value("${cipher.stream.buffer-size:65536}")
+    private int streamBufferSize;
+
+    @Value("${cipher.engine.off-heap.enabled:true}")
+    private boolean offHeapEnabled;
+
+    @Value("${cipher.engine.off-heap.threshold-bytes:16777216}")
+    private long offHeapThreshold;
 
     public String decrypt(String clientKey, String ciphertext) throws Exception {
+        return decrypt(clientKey, ciphertext, Endpoint.DECRYPT);
+    }
 
-        byte[] decodedCiphertext = Base64.getUrlDecoder().decode(ciphertext);
-        byte[][][] cipherMatrixChunks = StringToBitstream.byteArrayToMatrixChunks(decodedCiphertext);
+    private String decrypt(String clientKey, String ciphertext, Endpoint endpoint) throws Exception {
+        KeyMatrix decodedKey = KeyMatrix.fromHex(clientKey);
+        byte[] digest = resultCache.isEnabled(endpoint) ? DecryptionResultCache.textDigest(decodedKey, ciphertext) : null;
+        String cached = cached(digest);
+        if (cached != null) {
+            return cached;
+        }
 
-        byte[] byteArray = hexToByteArray(clientKey);
-        KeyMatrix decodedKey = KeyMatrix.rebuildMatrix(byteArray);
-        byte[] original_keyBytes = decodedKey.flattenMatrix();
+        PendingDecryption pending = decode(ciphertext, digest);
+        int rounds;
+        try (KeySchedule schedule = keyScheduleCache.getSchedule(decodedKey, pending.format())) {
+            rounds = schedule.getRounds();
+            blockEngine.decrypt(pending.blocks(), pending.offset(), pending.length(), schedule);
+        }
+        return finish(pending, rounds);
+    }
 
-        int rounds = extractFirstByteAsNumber(decodedKey);
+    // As decrypt, with the rounds handed to the batching engine; the schedule is released once they are done
+    private CompletableFuture<String> decryptBatched(String clientKey, String ciphertext, Endpoint endpoint) throws Exception {
+        KeyMatrix decodedKey = KeyMatrix.fromHex(clientKey);
+        byte[] digest = resultCache.isEnabled(endpoint) ? DecryptionResultCache.textDigest(decodedKey, ciphertext) : null;
+        String cached = cached(digest);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
 
-        KeyMatrix[] keySequence = new KeyMatrix[rounds + 1];
-        keySequence[0] = decodedKey;
-        for (int i = 1; i <= rounds; i++) {
-            keySequence[i] = hashService.applySha256ToMatrix(keySequence[i - 1]);
+        PendingDecryption pending = decode(ciphertext, digest);
+        KeySchedule schedule = keyScheduleCache.getSchedule(decodedKey, pending.format());
+        int rounds = schedule.getRounds();
+        CompletableFuture<Void> done;
+        try {
+            done = batchingEngine.decrypt(pending.blocks(), pending.offset(), pending.length(), schedule)
+                    .whenComplete((result, e) -> schedule.close());
+        } catch (RuntimeException e) {
+            schedule.close();
+            throw e;
         }
+        return CipherFutures.afterRounds(done, () -> finish(pending, rounds), cipherExecutor);
+    }
 
-        KeyMatrix finalHashedKey = keySequence[rounds];
+    // Decoded ciphertext blocks; blocks[offset, offset + length) is the chain
+    private record PendingDecryption(byte[] blocks, int offset, int length, CipherFormat format, int flags, byte[] digest) {
+    }
 
-        cipherMatrixChunks = cbcService.reverseCBC(cipherMatrixChunks, finalHashedKey);
+    private String cached(byte[] digest) {
+        byte[] cached = (digest != null) ? resultCache.get(digest) : null;
+        if (cached == null) {
+            return null;
+        }
+        String text = new String(cached, StandardCharsets.UTF_8);
+        Arrays.fill(cached, (byte) 0);
+        return text;
+    }
 
-        for (int i = rounds - 1; i >= 0; i--) {
-            KeyMatrix currentKey = keySequence[i];
+    private PendingDecryption decode(String ciphertext, byte[] digest) {
+        long mark = cipherMetrics.start();
+        byte[] decodedCiphertext = Base64.getUrlDecoder().decode(ciphertext);
+        // v2 carries a [version][flags] header, v1 is bare blocks
+        CipherFormat format = CipherFormat.detect(decodedCiphertext);
+        int offset = format.headerLength();
+        int flags = format.flags(decodedCiphertext);
+        byte[] cipherBlocks = (offset == 0) ? StringToBitstream.byteArrayToBlocks(decodedCiphertext) : decodedCiphertext;
+        cipherMetrics.stop(Operation.DECRYPT, Stage.DECODE, mark);
+        return new PendingDecryption(cipherBlocks, offset, cipherBlocks.length - offset, format, flags, digest);
+    }
+
+    private String finish(PendingDecryption pending, int rounds) {
+        byte[] cipherBlocks = pending.blocks();
+        int offset = pending.offset();
+        int length = pending.length();
+        long mark = cipherMetrics.start();
+        int plainLength = StringToBitstream.unpaddedLength(cipherBlocks, offset, length);
+        mark = cipherMetrics.stop(Operation.DECRYPT, Stage.PADDING, mark);
+        byte[] plain = cipherBlocks;
+        int plainOffset = offset;
+        if ((pending.flags() & CipherFormat.FLAG_DEFLATE) != 0) {
+            plain = compressionService.inflate(cipherBlocks, offset, plainLength);
+            plainOffset = 0;
+            plainLength = plain.length;
+            cipherMetrics.stop(Operation.DECRYPT, Stage.COMPRESSION, mark);
+        }
+        String text = new String(plain, plainOffset, plainLength, StandardCharsets.UTF_8);
+        if (pending.digest() != null) {
+            resultCache.put(pending.digest(), plain, plainOffset, plainLength, length);
+        }
+        cipherMetrics.message(Operation.DECRYPT, rounds, length / 16);
+        return text;
+    }
 
-            for (int j = 0; j < cipherMatrixChunks.length; j++) {
-                cipherMatrixChunks[j] = transposeService.reverseTransposeMatrix(cipherMatrixChunks[j], currentKey);
-                cipherMatrixChunks[j] = transformService.performBitShift(cipherMatrixChunks[j], currentKey, false);
+    // Runs on the compute executor so the request thread is released while the rounds run; small
+    // messages then wait for the batching engine without holding a compute thread
+    public CompletableFuture<String> decryptAsync(String clientKey, String ciphertext) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return decryptBatched(clientKey, ciphertext, Endpoint.DECRYPT);
+            } catch (Exception e) {
+                throw new CompletionException(e);
             }
+        }, cipherExecutor).thenCompose(Function.identity());
+    }
 
-            cipherMatrixChunks = xorService.xorBitstream(cipherMatrixChunks, currentKey);
+    // Decrypts a binary frame in place and writes the plaintext bytes straight out
+    public void decryptFrame(InputStream in, long contentLength, OutputStream out) throws Exception {
+        long mark = cipherMetrics.start();
+        long maxFrameLength = BinaryFrame.HEADER_LENGTH + (long) maxFrameSize + 16;
+        if (contentLength > maxFrameLength) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Binary frames are limited to " + maxFrameLength + " bytes");
+        }
+        if (offHeapEnabled && contentLength >= offHeapThreshold) {
+            decryptFrameOffHeap(in, contentLength, out);
+            return;
+        }
+        byte[] frame = (contentLength >= 0) ? in.readNBytes((int) contentLength) : in.readNBytes((int) maxFrameLength + 1);
+        if (frame.length > maxFrameLength) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Binary frames are limited to " + maxFrameLength + " bytes");
+        }
+        byte[] digest = null;
+        if (resultCache.isEnabled(Endpoint.BINARY)) {
+            digest = DecryptionResultCache.frameDigest(frame, frame.length);
+            byte[] cached = resultCache.get(digest);
+            if (cached != null) {
+                out.write(cached);
+                Arrays.fill(cached, (byte) 0);
+                Arrays.fill(frame, (byte) 0);
+                return;
+            }
         }
+        BinaryFrame.Header header = BinaryFrame.readHeader(frame, frame.length);
+        cipherMetrics.stop(Operation.DECRYPT, Stage.DECODE, mark);
 
-        byte[] sBox = generateSBox(original_keyBytes);
-        byte[] inverseSBox = generateInverseSBox(sBox);
-        cipherMatrixChunks = sBoxService.applySBoxSubstitution(cipherMatrixChunks, inverseSBox);
+        try {
+            try (KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.rebuildMatrix(header.key()), header.format())) {
+                blockEngine.decrypt(frame, BinaryFrame.HEADER_LENGTH, header.length(), schedule);
+            }
+            int plainLength = StringToBitstream.unpaddedLength(frame, BinaryFrame.HEADER_LENGTH, header.length());
+            cipherMetrics.message(Operation.DECRYPT, header.rounds(), header.length() / 16);
+            if ((header.flags() & CipherFormat.FLAG_DEFLATE) != 0) {
+                mark = cipherMetrics.start();
+                byte[] inflated = compressionService.inflate(frame, BinaryFrame.HEADER_LENGTH, plainLength);
+                cipherMetrics.stop(Operation.DECRYPT, Stage.COMPRESSION, mark);
+                if (digest != null) {
+                    resultCache.put(digest, inflated, 0, inflated.length, header.length());
+                }
+                out.write(inflated);
+                Arrays.fill(inflated, (byte) 0);
+            } else {
+                if (digest != null) {
+                    resultCache.put(digest, frame, BinaryFrame.HEADER_LENGTH, plainLength, header.length());
+                }
+                out.write(frame, BinaryFrame.HEADER_LENGTH, plainLength);
+            }
+        } finally {
+            Arrays.fill(frame, (byte) 0);
+            Arrays.fill(header.key(), (byte) 0);
+        }
+    }
+
+    // Mirrors EncryptionService's off-heap frames: the plaintext only exists in the shared arena,
+    // zeroed before the arena is closed; a deflated frame is inflated on the heap as usual
+    private void decryptFrameOffHeap(InputStream in, long contentLength, OutputStream out) throws Exception {
+        try (Arena arena = Arena.ofShared()) {
+            long mark = cipherMetrics.start();
+            MemorySegment frame = arena.allocate(contentLength, 16);
+            long received = SegmentStreams.readFully(in, frame);
+            byte[] headerBytes = frame.asSlice(0, Math.min(received, BinaryFrame.HEADER_LENGTH)).toArray(ValueLayout.JAVA_BYTE);
+            BinaryFrame.Header header = BinaryFrame.readHeader(headerBytes, (int) received);
+            cipherMetrics.stop(Operation.DECRYPT, Stage.DECODE, mark);
+            MemorySegment blocks = frame.asSlice(BinaryFrame.HEADER_LENGTH, header.length());
 
-        byte[] plainBytes = StringToBitstream.matrixChunksToByteArray(cipherMatrixChunks);
-        return new String(plainBytes, StandardCharsets.UTF_8);
+            try {
+                try (KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.rebuildMatrix(header.key()), header.format())) {
+                    segmentEngine.decrypt(blocks, schedule);
+                }
+                long plainLength = StringToBitstream.unpaddedLength(blocks, header.length());
+                cipherMetrics.message(Operation.DECRYPT, header.rounds(), header.length() / 16);
+                if ((header.flags() & CipherFormat.FLAG_DEFLATE) != 0) {
+                    byte[] compressed = blocks.asSlice(0, plainLength).toArray(ValueLayout.JAVA_BYTE);
+                    mark = cipherMetrics.start();
+                    byte[] inflated = compressionService.inflate(compressed, 0, compressed.length);
+                    cipherMetrics.stop(Operation.DECRYPT, Stage.COMPRESSION, mark);
+                    Arrays.fill(compressed, (byte) 0);
+                    out.write(inflated);
+                    Arrays.fill(inflated, (byte) 0);
+                } else {
+                    SegmentStreams.write(blocks.asSlice(0, plainLength), out);
+                }
+            } finally {
+                frame.fill((byte) 0);
+                Arrays.fill(headerBytes, (byte) 0);
+                Arrays.fill(header.key(), (byte) 0);
+            }
+        }
     }
 
-    private byte[] hexToByteArray(String hex) {
-        int len = hex.length();
-        byte[] data = new byte[len / 2];
-        for (int i = 0; i < len; i += 2) {
-            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
-                    + Character.digit(hex.charAt(i + 1), 16));
+    // Items run concurrently; a bad item (e.g. invalid padding) only fails its own entry
+    public List<CompletableFuture<DecryptionBatchResult>> decryptBatch(List<DecryptionRequest> requests) {
+        List<CompletableFuture<DecryptionBatchResult>> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            DecryptionRequest request = requests.get(i);
+            int index = i;
+            results.add(CipherFutures.supplyAsync(() -> {
+                try {
+                    return decryptBatched(request.getClientKey(), request.getCipherText(), Endpoint.BATCH);
+                } catch (Exception e) {
+                    return CompletableFuture.<String>failedFuture(e);
+                }
+            }, cipherExecutor).thenCompose(Function.identity()).handle((text, e) -> (e == null)
+                    ? DecryptionBatchResult.ok(index, text)
+                    : DecryptionBatchResult.failed(index, CipherFutures.unwrap(e))));
         }
-        return data;
+        return results;
     }
 
-    private int extractFirstByteAsNumber(KeyMatrix key) {
-        byte[][] keyMatrix = key.matrix();
-        byte firstByte = keyMatrix[0][0];
-        return Byte.toUnsignedInt(firstByte);
+    // Streams raw ciphertext from in to out as plaintext, holding at most one buffer of data
+    public long decryptStream(String clientKey, InputStream in, OutputStream out) throws Exception {
+        KeyMatrix decodedKey = KeyMatrix.fromHex(clientKey);
+
+        try (KeySchedule schedule = keyScheduleCache.getSchedule(decodedKey);
+             DecryptingInputStream decryptingStream = new DecryptingInputStream(in, blockEngine, schedule, streamBufferSize)) {
+            return decryptingStream.transferTo(out);
+        }
     }
 }
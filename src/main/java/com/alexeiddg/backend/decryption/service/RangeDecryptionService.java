@@ -0,0 +1,199 @@
+package com.alexeiddg.backend.decryption.service;
+
+import com.alexeiddg.backend.decryption.model.DecryptedRange;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.service.CompressionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleCache;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+// Decrypts a plaintext byte range without the rest of the ciphertext: CBC block i only needs
+// ciphertext blocks i and i - 1, so a read touches the blocks covering the range, the block
+// before them and the final block (for the plaintext length), whatever the ciphertext's size
+@Service
+public class RangeDecryptionService {
+
+    @Autowired
+    private KeyScheduleCache keyScheduleCache;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private CompressionService compressionService;
+
+    @Autowired
+    private CipherMetrics cipherMetrics;
+
+    // Largest range per call, and the largest deflated ciphertext that is decrypted whole
+    @Value("${cipher.binary.max-payload-size:67108864}")
+    private int maxRangeLength;
+
+    // Directory the HTTP file/frame range routes read from; empty disables them
+    @Value("${cipher.range.storage-root:}")
+    private String storageRoot;
+
+    // Base64url ciphertext from /api/encrypt, either format
+    public DecryptedRange decryptRange(String clientKey, String cipherText, long offset, int length)
+            throws NoSuchAlgorithmException, IOException {
+        CiphertextSource decoded = CiphertextSource.ofBase64(cipherText, 0);
+        byte[] header = new byte[(int) Math.min(2, Math.max(decoded.length(), 0))];
+        decoded.read(0, header, 0, header.length);
+        CipherFormat format = CipherFormat.detect(decoded.length(), header);
+        int flags = format.flags(header);
+
+        try (KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.fromHex(clientKey), format)) {
+            return decryptRange(CiphertextSource.ofBase64(cipherText, format.headerLength()), schedule, flags, offset, length);
+        }
+    }
+
+    // Raw ciphertext file, as written by /api/encrypt/stream or the batch runner
+    public DecryptedRange decryptFileRange(Path file, String clientKey, long offset, int length)
+            throws NoSuchAlgorithmException, IOException {
+        try (FileChannel channel = FileChannel.open(file, READ);
+             KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.fromHex(clientKey))) {
+            return decryptRange(CiphertextSource.of(channel, 0, channel.size()), schedule, 0, offset, length);
+        }
+    }
+
+    // Stored binary frame from /api/encrypt/binary, which carries its own key
+    public DecryptedRange decryptFrameRange(Path file, long offset, int length) throws NoSuchAlgorithmException, IOException {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            long frameLength = channel.size();
+            if (frameLength > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Binary frames are limited to " + Integer.MAX_VALUE + " bytes");
+            }
+            byte[] headerBytes = new byte[(int) Math.min(frameLength, BinaryFrame.HEADER_LENGTH)];
+            CiphertextSource.of(channel, 0, frameLength).read(0, headerBytes, 0, headerBytes.length);
+            BinaryFrame.Header header = BinaryFrame.readHeader(headerBytes, (int) frameLength);
+            Arrays.fill(headerBytes, (byte) 0);
+
+            try (KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.rebuildMatrix(header.key()), header.format())) {
+                CiphertextSource blocks = CiphertextSource.of(channel, BinaryFrame.HEADER_LENGTH, header.length());
+                return decryptRange(blocks, schedule, header.flags(), offset, length);
+            } finally {
+                Arrays.fill(header.key(), (byte) 0);
+            }
+        }
+    }
+
+    // A regular file under the storage root; paths that escape it (.., absolute, symlinks) are as missing as
+    // absent files, so the routes don't reveal anything outside the root
+    public Path storedFile(String relativePath) throws IOException {
+        if (storageRoot.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "cipher.range.storage-root is not set");
+        }
+        try {
+            Path root = Path.of(storageRoot).toRealPath();
+            Path file = root.resolve(relativePath).normalize();
+            if (file.startsWith(root) && Files.isRegularFile(file) && file.toRealPath().startsWith(root)) {
+                return file;
+            }
+        } catch (InvalidPathException e) {
+            // Reported as missing below
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No stored ciphertext at " + relativePath);
+    }
+
+    // A deflated plaintext has no byte-to-block mapping, so it is decrypted whole and then sliced
+    public DecryptedRange decryptRange(CiphertextSource source, KeySchedule schedule, int flags, long offset, int length)
+            throws IOException {
+        long blocksLength = source.length();
+        if (blocksLength <= 0 || blocksLength % 16 != 0) {
+            throw new IllegalArgumentException("Ciphertext length must be a non-zero multiple of 16");
+        }
+        if (offset < 0 || length < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Range offset and length must not be negative");
+        }
+        if (length > maxRangeLength) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Ranges are limited to " + maxRangeLength + " bytes");
+        }
+        if ((flags & CipherFormat.FLAG_DEFLATE) != 0) {
+            return sliceInflated(source, schedule, offset, length);
+        }
+
+        byte[] last = decryptBlocks(source, schedule, blocksLength - 16, 16);
+        long plaintextLength = blocksLength - 16 + StringToBitstream.unpaddedLength(last, 16, 16);
+        Arrays.fill(last, (byte) 0);
+        if (offset > plaintextLength) {
+            throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "Range starts past the plaintext's " + plaintextLength + " bytes");
+        }
+
+        long end = Math.min(offset + length, plaintextLength);
+        if (end == offset) {
+            return new DecryptedRange(offset, new byte[0], plaintextLength);
+        }
+        long first = offset / 16 * 16;
+        int blockBytes = (int) ((end + 15) / 16 * 16 - first);
+        byte[] blocks = decryptBlocks(source, schedule, first, blockBytes);
+        byte[] data = Arrays.copyOfRange(blocks, 16 + (int) (offset - first), 16 + (int) (end - first));
+        Arrays.fill(blocks, (byte) 0);
+        cipherMetrics.message(Operation.DECRYPT, schedule.getRounds(), blockBytes / 16 + 1);
+        return new DecryptedRange(offset, data, plaintextLength);
+    }
+
+    // Decrypts the blocks at [position, position + length); the result holds the predecessor block
+    // (or IV) in [0, 16) and the plaintext after it
+    private byte[] decryptBlocks(CiphertextSource source, KeySchedule schedule, long position, int length) throws IOException {
+        byte[] buffer = new byte[16 + length];
+        byte[] chain;
+        if (position == 0) {
+            chain = schedule.getIv().clone();
+            source.read(0, buffer, 16, length);
+        } else {
+            source.read(position - 16, buffer, 0, 16 + length);
+            chain = Arrays.copyOf(buffer, 16);
+        }
+        blockEngine.decryptChained(buffer, 16, length, schedule, chain);
+        Arrays.fill(chain, (byte) 0);
+        return buffer;
+    }
+
+    private DecryptedRange sliceInflated(CiphertextSource source, KeySchedule schedule, long offset, int length) throws IOException {
+        if (source.length() > maxRangeLength) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Deflated ciphertexts over " + maxRangeLength + " bytes cannot be read by range");
+        }
+        int blocksLength = (int) source.length();
+        byte[] blocks = decryptBlocks(source, schedule, 0, blocksLength);
+        byte[] plaintext;
+        try {
+            int deflatedLength = StringToBitstream.unpaddedLength(blocks, 16, blocksLength);
+            plaintext = compressionService.inflate(blocks, 16, deflatedLength);
+        } finally {
+            Arrays.fill(blocks, (byte) 0);
+        }
+        cipherMetrics.message(Operation.DECRYPT, schedule.getRounds(), blocksLength / 16);
+
+        if (offset > plaintext.length) {
+            Arrays.fill(plaintext, (byte) 0);
+            throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+                    "Range starts past the plaintext's " + plaintext.length + " bytes");
+        }
+        byte[] data = Arrays.copyOfRange(plaintext, (int) offset, (int) Math.min(offset + length, plaintext.length));
+        Arrays.fill(plaintext, (byte) 0);
+        return new DecryptedRange(offset, data, plaintext.length);
+    }
+}
@@ -0,0 +1,122 @@
+package com.alexeiddg.backend.decryption.stream;
+
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Decrypts the wrapped ciphertext a buffer at a time; the last decrypted block is held back
+// until end of stream so the padding can be stripped from the true final block
+public class DecryptingInputStream extends FilterInputStream {
+
+    private final BlockEngine blockEngine;
+    private final KeySchedule schedule;
+    private final byte[] chain;
+
+    // [0, 16) holds the block held back from the previous fill, ciphertext is read in after it
+    private final byte[] buffer;
+    private boolean holding;
+    private int position;
+    private int limit;
+    private boolean finished;
+
+    public DecryptingInputStream(InputStream in, BlockEngine blockEngine, KeySchedule schedule, int bufferSize) {
+        super(in);
+        if (bufferSize < 16 || bufferSize % 16 != 0) {
+            throw new IllegalArgumentException("Buffer size must be a positive multiple of 16");
+        }
+        this.blockEngine = blockEngine;
+        this.schedule = schedule;
+        this.chain = schedule.getIv().clone();
+        this.buffer = new byte[16 + bufferSize];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        int copied = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, copied);
+        position += copied;
+        return copied;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && (position < limit || fill())) {
+            int step = (int) Math.min(n - skipped, limit - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Arrays.fill(buffer, (byte) 0);
+        Arrays.fill(chain, (byte) 0);
+        super.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (!finished) {
+            if (holding) {
+                System.arraycopy(buffer, limit, buffer, 0, 16);
+            }
+            int read = in.readNBytes(buffer, 16, buffer.length - 16);
+            boolean endOfStream = read < buffer.length - 16;
+
+            int cipherLength = (read + 15) / 16 * 16;
+            Arrays.fill(buffer, 16 + read, 16 + cipherLength, (byte) 0);
+            blockEngine.decryptChained(buffer, 16, cipherLength, schedule, chain);
+
+            position = holding ? 0 : 16;
+            if (endOfStream) {
+                finished = true;
+                if (!holding && cipherLength == 0) {
+                    throw new IOException("Invalid padding");
+                }
+                try {
+                    limit = position + StringToBitstream.unpaddedLength(buffer, position, 16 + cipherLength - position);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            } else {
+                limit = 16 + cipherLength - 16;
+                holding = true;
+            }
+            if (position < limit) {
+                return true;
+            }
+        }
+        position = limit;
+        return false;
+    }
+}
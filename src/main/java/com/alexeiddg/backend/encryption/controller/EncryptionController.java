@@ -1,15 +1,30 @@
 package com.alexeiddg.backend.encryption.controller;
 
+import com.alexeiddg.backend.util.BatchResponseWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.Base64;
+import java.util.List;
+
+import com.alexeiddg.backend.encryption.service.AppendService;
 import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.encryption.model.EncryptionAppendRequest;
+import com.alexeiddg.backend.encryption.model.EncryptionAppendResponse;
 import com.alexeiddg.backend.encryption.model.EncryptionResponse;
 import com.alexeiddg.backend.encryption.model.EncryptionRequest;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
-import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @CrossOrigin(origins = "*", allowedHeaders = "*")
@@ -19,9 +34,66 @@ public class EncryptionController {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private AppendService appendService;
+
+    @Autowired
+    private BatchResponseWriter batchResponseWriter;
+
+    @Value("${cipher.batch-api.max-items:10000}")
+    private int maxBatchItems;
+
     @PostMapping("/encrypt")
-    public ResponseEntity<EncryptionResponse> thing(@RequestBody EncryptionRequest request) throws NoSuchAlgorithmException {
-        EncryptionResponse response = encryptionService.encrypt(request.getText());
-        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response);
+    public CompletableFuture<ResponseEntity<EncryptionResponse>> thing(@RequestBody EncryptionRequest request) {
+        return encryptionService.encryptAsync(request.getText(), request.isAppendable())
+                .thenApply(response -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response));
+    }
+
+    // Raw plaintext in, raw ciphertext out, chunked both ways; the key travels in response headers
+    @CrossOrigin(exposedHeaders = {"X-Encryption-Key", "X-Encryption-Iterations"})
+    @PostMapping("/encrypt/stream")
+    public void encryptStream(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        KeyMatrix encryptionKey = encryptionService.getEncryptionKey();
+
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader("X-Encryption-Key", encryptionKey.flattenToHex());
+        response.setHeader("X-Encryption-Iterations", String.valueOf(Byte.toUnsignedInt(encryptionKey.matrix()[0][0])));
+
+        encryptionService.encryptStream(request.getInputStream(), response.getOutputStream(), encryptionKey);
+    }
+
+    // Existing /encrypt ciphertext and key plus more text in; the blocks replacing its last block out
+    @PostMapping("/encrypt/append")
+    public ResponseEntity<EncryptionAppendResponse> append(@RequestBody EncryptionAppendRequest request) throws Exception {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(appendService.append(request.getClientKey(), request.getCipherText(), request.getText()));
+    }
+
+    // Raw plaintext appended to an /encrypt/stream ciphertext, given its key and its last one or two blocks
+    // (Base64url) in headers; the response replaces the ciphertext's final block
+    @PostMapping("/encrypt/stream/append")
+    public void appendStream(@RequestHeader("X-Encryption-Key") String clientKey,
+                             @RequestHeader("X-Ciphertext-Tail") String tail,
+                             HttpServletRequest request, HttpServletResponse response) throws Exception {
+        byte[] tailBlocks = Base64.getUrlDecoder().decode(tail);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        appendService.appendStream(clientKey, tailBlocks, request.getInputStream(), response.getOutputStream());
+    }
+
+    // Raw plaintext in, one binary frame (version, key, rounds, ciphertext) out; see BinaryFrame
+    @PostMapping(value = "/encrypt/binary", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void encryptBinary(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        encryptionService.encryptFrame(request.getInputStream(), request.getContentLengthLong(), response.getOutputStream());
+    }
+
+    // JSON array in, JSON array of per-item results out, written in request order as items complete
+    @PostMapping("/encrypt/batch")
+    public ResponseEntity<StreamingResponseBody> batch(@RequestBody List<EncryptionRequest> requests) {
+        if (requests.size() > maxBatchItems) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "At most " + maxBatchItems + " items per batch");
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON)
+                .body(batchResponseWriter.inOrder(encryptionService.encryptBatch(requests)));
     }
 }
@@ -0,0 +1,329 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.encryption.service.CBCService;
+import com.alexeiddg.backend.encryption.service.SBoxService;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.metrics.CipherMetrics.Stage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// A message of a few blocks fills at most one vector and runs alone on its thread. Small messages
+// submitted within one window are instead packed into a shared array and their rounds run as a single
+// pass of full vectors, each 16-byte slot with its own message's schedule. Substitution and CBC stay
+// per message (each has its own S-box and chain); the packed copy is zeroed once the blocks are back
+@Slf4j
+@Service
+public class BatchingEngine {
+
+    @Autowired
+    private SBoxService sBoxService;
+
+    @Autowired
+    private CBCService cbcService;
+
+    @Autowired
+    private FusedRoundKernel fusedRoundKernel;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private CipherMetrics cipherMetrics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cipher.engine.batching.enabled:false}")
+    private boolean enabled;
+
+    // How long the first message of a batch waits for others
+    @Value("${cipher.engine.batching.window:200us}")
+    private Duration window;
+
+    @Value("${cipher.engine.batching.max-message-blocks:4}")
+    private int maxMessageBlocks;
+
+    @Value("${cipher.engine.batching.max-batch-blocks:1024}")
+    private int maxBatchBlocks;
+
+    // One whole message in blocks[offset, offset + length)
+    public record Message(byte[] blocks, int offset, int length, KeySchedule schedule) {
+    }
+
+    private record Job(Message message, boolean encrypt, CompletableFuture<Void> done) {
+    }
+
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running;
+    private Thread collector;
+
+    // null without jdk.incubator.vector; the packed rounds then run message by message
+    private PackedKernel packedKernel;
+    private DistributionSummary batchMessages;
+
+    @PostConstruct
+    void initialize() {
+        packedKernel = loadPackedKernel();
+        batchMessages = DistributionSummary.builder("cipher.batching.messages")
+                .description("Messages whose rounds ran in one packed pass")
+                .register(meterRegistry);
+        Gauge.builder("cipher.batching.pending", queue, BlockingQueue::size)
+                .description("Messages waiting for the batching window to close")
+                .register(meterRegistry);
+        if (enabled) {
+            running = true;
+            collector = Thread.ofPlatform().name("cipher-batching").daemon(true).start(this::collect);
+            log.info("Batching messages of up to {} blocks over {}", maxMessageBlocks, window);
+        }
+    }
+
+    // Jobs already queued still run, on the closing thread
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+            collector.join();
+        }
+        drain();
+    }
+
+    // Completes once the message is encrypted in place (substitution, rounds and CBC from the IV, like
+    // BlockEngine.encrypt); messages too large to batch run on the calling thread. A malformed message
+    // is rejected here, before it is queued, so it cannot fail the batch it would have joined
+    public CompletableFuture<Void> encrypt(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        checkLength(length);
+        if (!accepts(length)) {
+            blockEngine.encrypt(blocks, offset, length, schedule);
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(new Job(new Message(blocks, offset, length, schedule), true, new CompletableFuture<>()));
+    }
+
+    public CompletableFuture<Void> decrypt(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        checkLength(length);
+        if (!accepts(length)) {
+            blockEngine.decrypt(blocks, offset, length, schedule);
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(new Job(new Message(blocks, offset, length, schedule), false, new CompletableFuture<>()));
+    }
+
+    private static void checkLength(int length) {
+        if (length % 16 != 0) {
+            throw new IllegalArgumentException("Message length must be a multiple of 16");
+        }
+    }
+
+    private boolean accepts(int length) {
+        return running && length > 0 && length <= maxMessageBlocks * 16;
+    }
+
+    private CompletableFuture<Void> submit(Job job) {
+        queue.add(job);
+        // Raced with shutdown after its drain
+        if (!running) {
+            drain();
+        }
+        return job.done();
+    }
+
+    public void encryptPacked(List<Message> messages) {
+        Packed packed = pack(messages);
+        try {
+            long mark = cipherMetrics.start();
+            for (int i = 0; i < packed.count(); i++) {
+                sBoxService.applySBoxSubstitution(packed.blocks(), packed.offsets()[i], packed.lengths()[i], packed.schedules()[i].getSBox());
+            }
+            if (packedKernel != null) {
+                packedKernel.encryptRounds(packed.blocks(), packed.offsets(), packed.lengths(), packed.schedules(), packed.count());
+            } else {
+                for (int i = 0; i < packed.count(); i++) {
+                    fusedRoundKernel.encryptRounds(packed.blocks(), packed.offsets()[i], packed.lengths()[i], packed.schedules()[i]);
+                }
+            }
+            mark = cipherMetrics.stop(Operation.ENCRYPT, Stage.ROUNDS, mark);
+            for (int i = 0; i < packed.count(); i++) {
+                cbcService.applyCBC(packed.blocks(), packed.offsets()[i], packed.lengths()[i], packed.schedules()[i].getIv());
+            }
+            cipherMetrics.stop(Operation.ENCRYPT, Stage.CBC, mark);
+            unpack(packed);
+        } finally {
+            Arrays.fill(packed.blocks(), (byte) 0);
+        }
+    }
+
+    public void decryptPacked(List<Message> messages) {
+        Packed packed = pack(messages);
+        try {
+            long mark = cipherMetrics.start();
+            for (int i = 0; i < packed.count(); i++) {
+                cbcService.reverseCBC(packed.blocks(), packed.offsets()[i], packed.lengths()[i], packed.schedules()[i].getIv());
+            }
+            mark = cipherMetrics.stop(Operation.DECRYPT, Stage.CBC, mark);
+            if (packedKernel != null) {
+                packedKernel.decryptRounds(packed.blocks(), packed.offsets(), packed.lengths(), packed.schedules(), packed.count());
+            } else {
+                for (int i = 0; i < packed.count(); i++) {
+                    fusedRoundKernel.decryptRounds(packed.blocks(), packed.offsets()[i], packed.lengths()[i], packed.schedules()[i]);
+                }
+            }
+            for (int i = 0; i < packed.count(); i++) {
+                sBoxService.applySBoxSubstitution(packed.blocks(), packed.offsets()[i], packed.lengths()[i], packed.schedules()[i].getInverseSBox());
+            }
+            cipherMetrics.stop(Operation.DECRYPT, Stage.ROUNDS, mark);
+            unpack(packed);
+        } finally {
+            Arrays.fill(packed.blocks(), (byte) 0);
+        }
+    }
+
+    private record Packed(byte[] blocks, int[] offsets, int[] lengths, KeySchedule[] schedules, List<Message> messages) {
+
+        int count() {
+            return messages.size();
+        }
+    }
+
+    // Sorted by round count, so a vector's slots mostly stop after the same round; the array is padded
+    // to whole vectors. Lengths are checked before any plaintext is copied, and a copy that still fails
+    // part way zeroes what it already copied
+    private Packed pack(List<Message> messages) {
+        messages.forEach(message -> checkLength(message.length()));
+        List<Message> sorted = new ArrayList<>(messages);
+        sorted.sort(Comparator.comparingInt(message -> message.schedule().getRounds()));
+        int laneBytes = (packedKernel != null) ? packedKernel.laneBytes() : 16;
+        int total = sorted.stream().mapToInt(Message::length).sum();
+        byte[] blocks = new byte[(total + laneBytes - 1) / laneBytes * laneBytes];
+        int[] offsets = new int[sorted.size()];
+        int[] lengths = new int[sorted.size()];
+        KeySchedule[] schedules = new KeySchedule[sorted.size()];
+        int position = 0;
+        try {
+            for (int i = 0; i < sorted.size(); i++) {
+                Message message = sorted.get(i);
+                System.arraycopy(message.blocks(), message.offset(), blocks, position, message.length());
+                offsets[i] = position;
+                lengths[i] = message.length();
+                schedules[i] = message.schedule();
+                position += message.length();
+            }
+        } catch (RuntimeException e) {
+            Arrays.fill(blocks, (byte) 0);
+            throw e;
+        }
+        return new Packed(blocks, offsets, lengths, schedules, sorted);
+    }
+
+    private static void unpack(Packed packed) {
+        for (int i = 0; i < packed.count(); i++) {
+            Message message = packed.messages().get(i);
+            System.arraycopy(packed.blocks(), packed.offsets()[i], message.blocks(), message.offset(), message.length());
+        }
+    }
+
+    // Waits for a first job, then gathers whatever arrives until the window closes or the batch is full
+    private void collect() {
+        List<Job> batch = new ArrayList<>();
+        while (running) {
+            try {
+                Job first = queue.take();
+                batch.add(first);
+                int blocks = first.message().length() / 16;
+                long deadline = System.nanoTime() + window.toNanos();
+                while (blocks < maxBatchBlocks) {
+                    Job next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    blocks += next.message().length() / 16;
+                }
+            } catch (InterruptedException e) {
+                // shutting down; what was gathered still runs
+            }
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+                batch = new ArrayList<>();
+            }
+        }
+    }
+
+    // Encryptions and decryptions run as separate passes on the engine's workers (on this thread
+    // without a pool); the cipher executor is avoided since its threads may be waiting on these jobs
+    private void dispatch(List<Job> batch) {
+        List<Job> encryptions = batch.stream().filter(Job::encrypt).toList();
+        List<Job> decryptions = batch.stream().filter(job -> !job.encrypt()).toList();
+        ForkJoinPool pool = blockEngine.parallelPool();
+        for (List<Job> jobs : List.of(encryptions, decryptions)) {
+            if (jobs.isEmpty()) {
+                continue;
+            }
+            if (pool != null && running) {
+                pool.execute(() -> run(jobs));
+            } else {
+                run(jobs);
+            }
+        }
+    }
+
+    private void run(List<Job> jobs) {
+        List<Message> messages = jobs.stream().map(Job::message).toList();
+        try {
+            if (jobs.getFirst().encrypt()) {
+                encryptPacked(messages);
+            } else {
+                decryptPacked(messages);
+            }
+            batchMessages.record(jobs.size());
+            jobs.forEach(job -> job.done().complete(null));
+        } catch (RuntimeException e) {
+            jobs.forEach(job -> job.done().completeExceptionally(e));
+        }
+    }
+
+    private void drain() {
+        List<Job> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            dispatch(remaining);
+        }
+    }
+
+    // Loaded reflectively, like BlockEngine's vector kernel, so the incubator classes are only touched
+    // when the module was added at startup
+    private PackedKernel loadPackedKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (PackedKernel) Class.forName(BatchingEngine.class.getPackageName() + ".PackedVectorKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Packed vector kernel unavailable: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.encryption.pipeline.PipelineCache;
+import com.alexeiddg.backend.encryption.service.CBCService;
+import com.alexeiddg.backend.encryption.service.SBoxService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.metrics.CipherMetrics.Stage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Runs every stage in place over one contiguous array of 16-byte blocks (row-major, like KeyMatrix.flattenMatrix)
+@Slf4j
+@Service
+public class BlockEngine {
+
+    @Autowired
+    private SBoxService sBoxService;
+
+    @Autowired
+    private ReferenceRoundKernel referenceRoundKernel;
+
+    @Autowired
+    private FusedRoundKernel fusedRoundKernel;
+
+    @Autowired
+    private CBCService cbcService;
+
+    @Autowired
+    private PipelineCache pipelineCache;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private CipherMetrics cipherMetrics;
+
+    @Value("${cipher.engine.kernel:auto}")
+    private KernelType kernelType;
+
+    @Value("${cipher.engine.parallel.enabled:true}")
+    private boolean parallelEnabled;
+
+    @Value("${cipher.engine.parallel.threshold-blocks:4096}")
+    private int parallelThresholdBlocks;
+
+    // 0 uses one worker per available processor
+    @Value("${cipher.engine.parallel.pool-size:0}")
+    private int parallelPoolSize;
+
+    // null with the pipeline kernel, which runs the substitution together with the rounds
+    private RoundKernel roundKernel;
+    private VectorKernel vectorKernel;
+    private ForkJoinPool forkJoinPool;
+
+    @PostConstruct
+    void initialize() {
+        // Ranges are at least threshold-blocks long, so 0 would split a payload forever
+        if (parallelThresholdBlocks < 1) {
+            throw new IllegalArgumentException("cipher.engine.parallel.threshold-blocks must be at least 1, was " + parallelThresholdBlocks);
+        }
+        if (kernelType == KernelType.VECTOR || kernelType == KernelType.AUTO) {
+            vectorKernel = loadVectorKernel();
+        }
+        if (kernelType == KernelType.VECTOR && vectorKernel == null) {
+            log.warn("cipher.engine.kernel=vector but jdk.incubator.vector is not available, using fused kernel");
+        }
+        roundKernel = switch (kernelType) {
+            case REFERENCE -> referenceRoundKernel;
+            case FUSED -> fusedRoundKernel;
+            case VECTOR, AUTO -> (vectorKernel != null) ? vectorKernel : fusedRoundKernel;
+            case PIPELINE -> null;
+        };
+        log.info("Block engine using {} kernel", activeKernel());
+        if (kernelType == KernelType.PIPELINE) {
+            log.warn("The pipeline kernel runs about half as fast as the fused kernel; use it to try out stage layouts, not in production");
+        }
+
+        int poolSize = (parallelPoolSize > 0) ? parallelPoolSize : Runtime.getRuntime().availableProcessors();
+        if (parallelEnabled && poolSize > 1) {
+            forkJoinPool = new ForkJoinPool(poolSize);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    public void encrypt(byte[] blocks, KeyMatrix encryptionKey) throws NoSuchAlgorithmException {
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(encryptionKey)) {
+            encrypt(blocks, schedule);
+        }
+    }
+
+    public void decrypt(byte[] blocks, KeyMatrix decryptionKey) throws NoSuchAlgorithmException {
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(decryptionKey)) {
+            decrypt(blocks, schedule);
+        }
+    }
+
+    public void encrypt(byte[] blocks, KeySchedule schedule) {
+        encrypt(blocks, 0, blocks.length, schedule);
+    }
+
+    public void decrypt(byte[] blocks, KeySchedule schedule) {
+        decrypt(blocks, 0, blocks.length, schedule);
+    }
+
+    // One whole message in [offset, offset + length), e.g. behind a format header
+    public void encrypt(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        encryptChained(blocks, offset, length, schedule, schedule.getIv().clone());
+    }
+
+    public void decrypt(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        decryptChained(blocks, offset, length, schedule, schedule.getIv().clone());
+    }
+
+    // Encrypts whole blocks continuing a CBC chain: chain holds the previous ciphertext block
+    // (the IV for the first call) and is advanced to this call's last ciphertext block
+    public void encryptChained(byte[] blocks, int offset, int length, KeySchedule schedule, byte[] chain) {
+        if (length == 0) {
+            return;
+        }
+        long mark = cipherMetrics.start();
+        forEachRange(blocks, offset, length, null,
+                (rangeOffset, rangeLength, iv) -> encryptRounds(blocks, rangeOffset, rangeLength, schedule));
+        mark = cipherMetrics.stop(Operation.ENCRYPT, Stage.ROUNDS, mark);
+        cbcService.applyCBC(blocks, offset, length, chain);
+        cipherMetrics.stop(Operation.ENCRYPT, Stage.CBC, mark);
+        System.arraycopy(blocks, offset + length - 16, chain, 0, 16);
+    }
+
+    public void decryptChained(byte[] blocks, int offset, int length, KeySchedule schedule, byte[] chain) {
+        if (length == 0) {
+            return;
+        }
+        byte[] nextChain = Arrays.copyOfRange(blocks, offset + length - 16, offset + length);
+        // Two passes, each timed as wall clock around the whole call, so the stages compare with encryptChained
+        long mark = cipherMetrics.start();
+        forEachRange(blocks, offset, length, chain,
+                (rangeOffset, rangeLength, iv) -> reverseCBC(blocks, rangeOffset, rangeLength, iv));
+        mark = cipherMetrics.stop(Operation.DECRYPT, Stage.CBC, mark);
+        forEachRange(blocks, offset, length, null,
+                (rangeOffset, rangeLength, iv) -> decryptRounds(blocks, rangeOffset, rangeLength, schedule));
+        cipherMetrics.stop(Operation.DECRYPT, Stage.ROUNDS, mark);
+        System.arraycopy(nextChain, 0, chain, 0, 16);
+    }
+
+    // Substitution and rounds with the selected kernel, without CBC; SegmentEngine runs its ranges through here
+    void encryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        if (roundKernel == null) {
+            pipelineCache.get(schedule).encrypt(blocks, offset, length);
+            return;
+        }
+        sBoxService.applySBoxSubstitution(blocks, offset, length, schedule.getSBox());
+        roundKernel.encryptRounds(blocks, offset, length, schedule);
+    }
+
+    void decryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        if (roundKernel == null) {
+            pipelineCache.get(schedule).decrypt(blocks, offset, length);
+            return;
+        }
+        roundKernel.decryptRounds(blocks, offset, length, schedule);
+        sBoxService.applySBoxSubstitution(blocks, offset, length, schedule.getInverseSBox());
+    }
+
+    private void reverseCBC(byte[] blocks, int offset, int length, byte[] iv) {
+        if (vectorKernel != null && roundKernel == vectorKernel) {
+            vectorKernel.reverseCBC(blocks, offset, length, iv);
+        } else {
+            cbcService.reverseCBC(blocks, offset, length, iv);
+        }
+    }
+
+    private interface RangeOperation {
+        void apply(int offset, int length, byte[] iv);
+    }
+
+    private void forEachRange(byte[] blocks, int offset, int length, byte[] iv, RangeOperation operation) {
+        int rangeBytes = Math.max(parallelThresholdBlocks, length / 16 / (parallelism() * 4)) * 16;
+        if (forkJoinPool == null || length < parallelThresholdBlocks * 16) {
+            operation.apply(offset, length, iv);
+        } else {
+            forkJoinPool.invoke(new RangeTask(blocks, offset, length, iv, rangeBytes, operation));
+        }
+    }
+
+    private int parallelism() {
+        return (forkJoinPool != null) ? forkJoinPool.getParallelism() : 1;
+    }
+
+    // Halves the range until it is small enough; with an IV (reverse CBC) the right half's predecessor
+    // block is copied before either half runs, so neither half reads a block the other already decrypted
+    private static final class RangeTask extends RecursiveAction {
+        private final byte[] blocks;
+        private final int offset;
+        private final int length;
+        private final byte[] iv;
+        private final int rangeBytes;
+        private final RangeOperation operation;
+
+        RangeTask(byte[] blocks, int offset, int length, byte[] iv, int rangeBytes, RangeOperation operation) {
+            this.blocks = blocks;
+            this.offset = offset;
+            this.length = length;
+            this.iv = iv;
+            this.rangeBytes = rangeBytes;
+            this.operation = operation;
+        }
+
+        @Override
+        protected void compute() {
+            if (length <= rangeBytes || length <= 16) {
+                operation.apply(offset, length, iv);
+                return;
+            }
+            int half = (length / 32) * 16;
+            byte[] rightIv = (iv != null) ? Arrays.copyOfRange(blocks, offset + half - 16, offset + half) : null;
+            invokeAll(new RangeTask(blocks, offset, half, iv, rangeBytes, operation),
+                    new RangeTask(blocks, offset + half, length - half, rightIv, rangeBytes, operation));
+        }
+    }
+
+    // Shared with SegmentEngine so off-heap payloads split across the same workers
+    ForkJoinPool parallelPool() {
+        return forkJoinPool;
+    }
+
+    int parallelThresholdBlocks() {
+        return parallelThresholdBlocks;
+    }
+
+    public RoundKernel roundKernel() {
+        return roundKernel;
+    }
+
+    public String activeKernel() {
+        if (roundKernel == null) {
+            return "pipeline";
+        }
+        if (roundKernel == vectorKernel) {
+            return "vector(" + vectorKernel.vectorBitSize() + "-bit)";
+        }
+        return (roundKernel == fusedRoundKernel) ? "fused" : "reference";
+    }
+
+    // Loaded reflectively so nothing touches the incubator classes unless the module was added at startup
+    private VectorKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (VectorKernel) Class.forName(BlockEngine.class.getPackageName() + ".VectorRoundKernel")
+                    .getDeclaredConstructor(RoundKernel.class)
+                    .newInstance(fusedRoundKernel);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("Vector kernel unavailable: {}", e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import org.springframework.stereotype.Service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Holds each block as two big-endian longs (rows 0-1, rows 2-3) and runs every round on them in registers
+@Service
+public class FusedRoundKernel implements RoundKernel {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    // Per-round constants, STRIDE longs per round, derived once per schedule and direction. Kept in one
+    // long[] so they can be wiped with the schedule's own arrays
+    private static final int STRIDE = 32;
+    private static final int KEY_HI = 0;
+    private static final int KEY_LO = 1;
+    // Byte rotation: shift amount, upper-row mask and lower-row mask, for each row pair of each long
+    private static final int HI_TOP = 2;
+    private static final int HI_BOTTOM = 5;
+    private static final int LO_TOP = 8;
+    private static final int LO_BOTTOM = 11;
+    // Column shuffle: mask plus left/right bit shift per source column
+    private static final int COLUMN_MASKS = 14;
+    private static final int COLUMN_LEFT = 18;
+    private static final int COLUMN_RIGHT = 22;
+    // Row shuffle: output row j takes input row at ROW_SOURCE + j
+    private static final int ROW_SOURCE = 26;
+
+    // Keyed by schedule identity; an entry is zeroed and dropped when the schedule's last lease is released
+    private final Map<KeySchedule, long[]> encryptConstants = new ConcurrentHashMap<>();
+    private final Map<KeySchedule, long[]> decryptConstants = new ConcurrentHashMap<>();
+
+    long[] constants(KeySchedule schedule, boolean encrypt) {
+        Map<KeySchedule, long[]> cache = encrypt ? encryptConstants : decryptConstants;
+        long[] constants = cache.get(schedule);
+        if (constants == null) {
+            constants = cache.computeIfAbsent(schedule, key -> {
+                key.onDestroy(() -> {
+                    long[] removed = cache.remove(key);
+                    if (removed != null) {
+                        Arrays.fill(removed, 0L);
+                    }
+                });
+                return compile(key, encrypt);
+            });
+        }
+        return constants;
+    }
+
+    static long[] compile(KeySchedule schedule, boolean encrypt) {
+        long[] constants = new long[schedule.getRounds() * STRIDE];
+        for (int i = 0; i < schedule.getRounds(); i++) {
+            compileRound(constants, i * STRIDE, schedule.getRoundKeys()[i], schedule.getShiftAmounts()[i],
+                    schedule.getBlockPermutations()[i], encrypt);
+        }
+        return constants;
+    }
+
+    private static void compileRound(long[] constants, int base, byte[] roundKey, int[] shiftAmounts,
+                                     int[] blockPerm, boolean encrypt) {
+        constants[base + KEY_HI] = (long) LONGS.get(roundKey, 0);
+        constants[base + KEY_LO] = (long) LONGS.get(roundKey, 8);
+
+        int[] rotations = new int[4];
+        int[] perm = new int[4];
+        int[] inverse = new int[4];
+        for (int i = 0; i < 4; i++) {
+            rotations[i] = encrypt ? shiftAmounts[i] : (8 - shiftAmounts[i]) & 7;
+            perm[i] = blockPerm[i] % 4;
+            inverse[perm[i]] = i;
+        }
+
+        rotation(constants, base + HI_TOP, rotations[0], 32);
+        rotation(constants, base + HI_BOTTOM, rotations[1], 0);
+        rotation(constants, base + LO_TOP, rotations[2], 32);
+        rotation(constants, base + LO_BOTTOM, rotations[3], 0);
+
+        for (int column = 0; column < 4; column++) {
+            int target = encrypt ? perm[column] : inverse[column];
+            int bitShift = (column - target) * 8;
+            constants[base + COLUMN_MASKS + column] = (0xFFL << ((3 - column) * 8)) * 0x100000001L;
+            constants[base + COLUMN_LEFT + column] = Math.max(bitShift, 0);
+            constants[base + COLUMN_RIGHT + column] = Math.max(-bitShift, 0);
+        }
+
+        int[] rowSource = encrypt ? inverse : perm;
+        for (int row = 0; row < 4; row++) {
+            constants[base + ROW_SOURCE + row] = rowSource[row];
+        }
+    }
+
+    private static void rotation(long[] constants, int index, int shift, int rowOffset) {
+        constants[index] = shift;
+        constants[index + 1] = (((0xFF << shift) & 0xFF) * 0x01010101L) << rowOffset;
+        constants[index + 2] = ((0xFF >>> (8 - shift)) * 0x01010101L) << rowOffset;
+    }
+
+    @Override
+    public void encryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        long[] constants = constants(schedule, true);
+        for (int block = offset; block < offset + length; block += 16) {
+            long hi = (long) LONGS.get(blocks, block);
+            long lo = (long) LONGS.get(blocks, block + 8);
+
+            for (int base = 0; base < constants.length; base += STRIDE) {
+                hi = rotate(hi ^ constants[base + KEY_HI], constants, base + HI_TOP, base + HI_BOTTOM);
+                lo = rotate(lo ^ constants[base + KEY_LO], constants, base + LO_TOP, base + LO_BOTTOM);
+                hi = shuffleColumns(hi, constants, base);
+                lo = shuffleColumns(lo, constants, base);
+
+                long shuffledHi = shuffleRows(hi, lo, constants[base + ROW_SOURCE], constants[base + ROW_SOURCE + 1]);
+                lo = shuffleRows(hi, lo, constants[base + ROW_SOURCE + 2], constants[base + ROW_SOURCE + 3]);
+                hi = shuffledHi;
+            }
+
+            LONGS.set(blocks, block, hi);
+            LONGS.set(blocks, block + 8, lo);
+        }
+    }
+
+    @Override
+    public void decryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        long[] constants = constants(schedule, false);
+        for (int block = offset; block < offset + length; block += 16) {
+            long hi = (long) LONGS.get(blocks, block);
+            long lo = (long) LONGS.get(blocks, block + 8);
+
+            for (int base = constants.length - STRIDE; base >= 0; base -= STRIDE) {
+                long shuffledHi = shuffleRows(hi, lo, constants[base + ROW_SOURCE], constants[base + ROW_SOURCE + 1]);
+                lo = shuffleRows(hi, lo, constants[base + ROW_SOURCE + 2], constants[base + ROW_SOURCE + 3]);
+                hi = shuffleColumns(shuffledHi, constants, base);
+                lo = shuffleColumns(lo, constants, base);
+
+                hi = rotate(hi, constants, base + HI_TOP, base + HI_BOTTOM) ^ constants[base + KEY_HI];
+                lo = rotate(lo, constants, base + LO_TOP, base + LO_BOTTOM) ^ constants[base + KEY_LO];
+            }
+
+            LONGS.set(blocks, block, hi);
+            LONGS.set(blocks, block + 8, lo);
+        }
+    }
+
+    // Rotates every byte left, by one amount for the upper row of the long and another for the lower row
+    private static long rotate(long value, long[] constants, int top, int bottom) {
+        int topShift = (int) constants[top];
+        int bottomShift = (int) constants[bottom];
+        return ((value << topShift) & constants[top + 1]) | ((value >>> (8 - topShift)) & constants[top + 2])
+                | ((value << bottomShift) & constants[bottom + 1]) | ((value >>> (8 - bottomShift)) & constants[bottom + 2]);
+    }
+
+    private static long shuffleColumns(long value, long[] constants, int base) {
+        long result = 0;
+        for (int column = 0; column < 4; column++) {
+            result |= ((value & constants[base + COLUMN_MASKS + column]) << constants[base + COLUMN_LEFT + column])
+                    >>> constants[base + COLUMN_RIGHT + column];
+        }
+        return result;
+    }
+
+    private static long shuffleRows(long hi, long lo, long topSource, long bottomSource) {
+        return (row(hi, lo, (int) topSource) << 32) | row(hi, lo, (int) bottomSource);
+    }
+
+    private static long row(long hi, long lo, int row) {
+        return switch (row) {
+            case 0 -> hi >>> 32;
+            case 1 -> hi & 0xFFFFFFFFL;
+            case 2 -> lo >>> 32;
+            default -> lo & 0xFFFFFFFFL;
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.alexeiddg.backend.encryption.engine;
+
+public enum KernelType {
+    REFERENCE,
+    FUSED,
+    VECTOR,
+    // Stage pipeline compiled into one method handle per key schedule; the compile costs a few ms on
+    // the schedule's first use, so it suits long-lived keys (key cache, channel sessions, batch files)
+    PIPELINE,
+    // VECTOR when jdk.incubator.vector is present, FUSED otherwise
+    AUTO
+}
@@ -0,0 +1,15 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+// Runs the rounds over blocks of several messages packed into one array, message i at
+// [offsets[i], offsets[i] + lengths[i]) with schedules[i]; blocks outside every message are padding
+interface PackedKernel {
+
+    // Bytes per pass; the packed array's length is a multiple of it
+    int laneBytes();
+
+    void encryptRounds(byte[] blocks, int[] offsets, int[] lengths, KeySchedule[] schedules, int count);
+
+    void decryptRounds(byte[] blocks, int[] offsets, int[] lengths, KeySchedule[] schedules, int count);
+}
@@ -0,0 +1,175 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+// VectorRoundKernel for packed messages: each 16-byte slot of a vector can belong to a different
+// message, so the round keys, rotations and transpositions are loaded per slot from tables copied
+// together for each vector instead of broadcast from one schedule. A vector runs as many rounds as its
+// longest message; slots past their own message's rounds (or holding padding) get a zero key, zero
+// rotation and identity shuffle, which masks them out of those rounds without a blend. The tables are
+// key material, so they are zeroed once the pass ends
+class PackedVectorKernel implements PackedKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = (ByteVector.SPECIES_PREFERRED.length() >= 16)
+            ? ByteVector.SPECIES_PREFERRED
+            : ByteVector.SPECIES_128;
+
+    @Override
+    public int laneBytes() {
+        return SPECIES.length();
+    }
+
+    // Lane i's slot offset, added to the within-slot gather indexes
+    private static final ByteVector SLOT_BASE = slotBase();
+
+    private static final byte[] ZERO = new byte[16];
+    private static final byte[] IDENTITY = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
+
+    @Override
+    public void encryptRounds(byte[] blocks, int[] offsets, int[] lengths, KeySchedule[] schedules, int count) {
+        Tables tables = new Tables(blocks.length, offsets, lengths, schedules, count, true);
+        try {
+            int lanes = SPECIES.length();
+            for (int chunk = 0; chunk < blocks.length / lanes; chunk++) {
+                int rounds = tables.fill(chunk);
+                ByteVector vector = ByteVector.fromArray(SPECIES, blocks, chunk * lanes);
+                for (int i = 0; i < rounds; i++) {
+                    int table = i * lanes;
+                    vector = vector.lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, tables.keys, table))
+                            .lanewise(VectorOperators.ROL, ByteVector.fromArray(SPECIES, tables.shifts, table));
+                    vector = ByteVector.fromArray(SPECIES, tables.sources, table).add(SLOT_BASE).selectFrom(vector);
+                }
+                vector.intoArray(blocks, chunk * lanes);
+            }
+        } finally {
+            tables.wipe();
+        }
+    }
+
+    @Override
+    public void decryptRounds(byte[] blocks, int[] offsets, int[] lengths, KeySchedule[] schedules, int count) {
+        Tables tables = new Tables(blocks.length, offsets, lengths, schedules, count, false);
+        try {
+            int lanes = SPECIES.length();
+            for (int chunk = 0; chunk < blocks.length / lanes; chunk++) {
+                int rounds = tables.fill(chunk);
+                ByteVector vector = ByteVector.fromArray(SPECIES, blocks, chunk * lanes);
+                for (int i = rounds - 1; i >= 0; i--) {
+                    int table = i * lanes;
+                    vector = ByteVector.fromArray(SPECIES, tables.sources, table).add(SLOT_BASE).selectFrom(vector)
+                            .lanewise(VectorOperators.ROR, ByteVector.fromArray(SPECIES, tables.shifts, table))
+                            .lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, tables.keys, table));
+                }
+                vector.intoArray(blocks, chunk * lanes);
+            }
+        } finally {
+            tables.wipe();
+        }
+    }
+
+    private static ByteVector slotBase() {
+        byte[] base = new byte[SPECIES.length()];
+        for (int i = 0; i < base.length; i++) {
+            base[i] = (byte) (i & ~15);
+        }
+        return ByteVector.fromArray(SPECIES, base, 0);
+    }
+
+    // Each message's rotations and gather indexes are laid out once per call, 16 bytes per round (its
+    // round keys already are); a vector's tables are then copied together from its slots' messages
+    private static final class Tables {
+        final KeySchedule[] schedules;
+        final int[] blockMessages;
+        final byte[][] messageShifts;
+        final byte[][] messageSources;
+        final byte[] keys;
+        final byte[] shifts;
+        final byte[] sources;
+
+        Tables(int length, int[] offsets, int[] lengths, KeySchedule[] schedules, int count, boolean encrypt) {
+            this.schedules = schedules;
+            blockMessages = new int[length / 16];
+            Arrays.fill(blockMessages, -1);
+            messageShifts = new byte[count][];
+            messageSources = new byte[count][];
+            int maxRounds = 0;
+            for (int m = 0; m < count; m++) {
+                Arrays.fill(blockMessages, offsets[m] / 16, (offsets[m] + lengths[m]) / 16, m);
+                maxRounds = Math.max(maxRounds, schedules[m].getRounds());
+                layOut(m, schedules[m], encrypt);
+            }
+            keys = new byte[maxRounds * SPECIES.length()];
+            shifts = new byte[keys.length];
+            sources = new byte[keys.length];
+        }
+
+        // Gathers: the inverse permutation to encrypt, the permutation itself to decrypt
+        private void layOut(int message, KeySchedule schedule, boolean encrypt) {
+            int rounds = schedule.getRounds();
+            byte[] shiftTable = new byte[rounds * 16];
+            byte[] sourceTable = new byte[rounds * 16];
+            for (int i = 0; i < rounds; i++) {
+                int[] shiftAmounts = schedule.getShiftAmounts()[i];
+                int[] blockPerm = schedule.getBlockPermutations()[i];
+                for (int j = 0; j < 16; j++) {
+                    shiftTable[i * 16 + j] = (byte) shiftAmounts[j >> 2];
+                    if (encrypt) {
+                        sourceTable[i * 16 + blockPerm[j]] = (byte) j;
+                    } else {
+                        sourceTable[i * 16 + j] = (byte) blockPerm[j];
+                    }
+                }
+            }
+            messageShifts[message] = shiftTable;
+            messageSources[message] = sourceTable;
+        }
+
+        // Returns the vector's round count: that of its longest message
+        int fill(int chunk) {
+            int lanes = SPECIES.length();
+            int slots = lanes / 16;
+            int rounds = 0;
+            for (int slot = 0; slot < slots; slot++) {
+                int message = blockMessages[chunk * slots + slot];
+                if (message >= 0) {
+                    rounds = Math.max(rounds, schedules[message].getRounds());
+                }
+            }
+            for (int slot = 0; slot < slots; slot++) {
+                int message = blockMessages[chunk * slots + slot];
+                int messageRounds = (message >= 0) ? schedules[message].getRounds() : 0;
+                for (int i = 0; i < rounds; i++) {
+                    int table = i * lanes + slot * 16;
+                    if (i < messageRounds) {
+                        System.arraycopy(schedules[message].getRoundKeys()[i], 0, keys, table, 16);
+                        System.arraycopy(messageShifts[message], i * 16, shifts, table, 16);
+                        System.arraycopy(messageSources[message], i * 16, sources, table, 16);
+                    } else {
+                        System.arraycopy(ZERO, 0, keys, table, 16);
+                        System.arraycopy(ZERO, 0, shifts, table, 16);
+                        System.arraycopy(IDENTITY, 0, sources, table, 16);
+                    }
+                }
+            }
+            return rounds;
+        }
+
+        void wipe() {
+            Arrays.fill(keys, (byte) 0);
+            Arrays.fill(shifts, (byte) 0);
+            Arrays.fill(sources, (byte) 0);
+            for (int m = 0; m < messageShifts.length; m++) {
+                if (messageShifts[m] != null) {
+                    Arrays.fill(messageShifts[m], (byte) 0);
+                    Arrays.fill(messageSources[m], (byte) 0);
+                }
+            }
+        }
+    }
+}
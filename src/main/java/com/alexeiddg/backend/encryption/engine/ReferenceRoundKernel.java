@@ -0,0 +1,41 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.encryption.service.TransformService;
+import com.alexeiddg.backend.encryption.service.TransposeService;
+import com.alexeiddg.backend.encryption.service.XORService;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// One pass per stage per round, straight through the stage services
+@Service
+public class ReferenceRoundKernel implements RoundKernel {
+
+    @Autowired
+    private XORService xorService;
+
+    @Autowired
+    private TransformService transformService;
+
+    @Autowired
+    private TransposeService transposeService;
+
+    @Override
+    public void encryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        for (int i = 0; i < schedule.getRounds(); i++) {
+            xorService.xorBlocks(blocks, offset, length, schedule.getRoundKeys()[i]);
+            transformService.performBitShift(blocks, offset, length, schedule.getShiftAmounts()[i], true);
+            transposeService.transposeBlocks(blocks, offset, length, schedule.getBlockPermutations()[i]);
+        }
+    }
+
+    @Override
+    public void decryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        for (int i = schedule.getRounds() - 1; i >= 0; i--) {
+            transposeService.reverseTransposeBlocks(blocks, offset, length, schedule.getBlockPermutations()[i]);
+            transformService.performBitShift(blocks, offset, length, schedule.getShiftAmounts()[i], false);
+            xorService.xorBlocks(blocks, offset, length, schedule.getRoundKeys()[i]);
+        }
+    }
+}
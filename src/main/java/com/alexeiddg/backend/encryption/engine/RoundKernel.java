@@ -0,0 +1,11 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+// Runs the XOR / shift / transpose rounds over the 16-byte blocks in [offset, offset + length)
+public interface RoundKernel {
+
+    void encryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule);
+
+    void decryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule);
+}
@@ -0,0 +1,151 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.metrics.CipherMetrics.Stage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Off-heap counterpart of BlockEngine: the same cipher over the 16-byte blocks of a MemorySegment
+// (arena-allocated or a mapped file). CBC runs on the segment as big-endian longs; the rounds run
+// with BlockEngine's selected kernel over one small heap buffer per range at a time, zeroed after
+// use, so the payload itself never lives on the heap. Large segments are split across BlockEngine's
+// pool, so they must come from a shared arena
+@Service
+public class SegmentEngine {
+
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private CipherMetrics cipherMetrics;
+
+    // Bytes of a range staged on the heap per kernel call (a multiple of every kernel's vector width)
+    private static final int STAGING_BYTES = 65536;
+
+    public void encrypt(MemorySegment blocks, KeySchedule schedule) {
+        encryptChained(blocks, schedule, schedule.getIv().clone());
+    }
+
+    public void decrypt(MemorySegment blocks, KeySchedule schedule) {
+        decryptChained(blocks, schedule, schedule.getIv().clone());
+    }
+
+    // As BlockEngine.encryptChained: chain holds the previous ciphertext block and is advanced past this segment
+    public void encryptChained(MemorySegment blocks, KeySchedule schedule, byte[] chain) {
+        long length = blocks.byteSize();
+        if (length == 0) {
+            return;
+        }
+        long mark = cipherMetrics.start();
+        forEachRange(length, (offset, end) -> staged(blocks, offset, end,
+                (buffer, bufferLength) -> blockEngine.encryptRounds(buffer, 0, bufferLength, schedule)));
+        mark = cipherMetrics.stop(Operation.ENCRYPT, Stage.ROUNDS, mark);
+
+        long chainHi = (long) LONGS.get(chain, 0);
+        long chainLo = (long) LONGS.get(chain, 8);
+        for (long block = 0; block < length; block += 16) {
+            chainHi ^= blocks.get(LONG, block);
+            chainLo ^= blocks.get(LONG, block + 8);
+            blocks.set(LONG, block, chainHi);
+            blocks.set(LONG, block + 8, chainLo);
+        }
+        LONGS.set(chain, 0, chainHi);
+        LONGS.set(chain, 8, chainLo);
+        cipherMetrics.stop(Operation.ENCRYPT, Stage.CBC, mark);
+    }
+
+    // Reverse CBC runs back to front first, so every block still sees its predecessor's ciphertext,
+    // then the rounds are free to split across workers
+    public void decryptChained(MemorySegment blocks, KeySchedule schedule, byte[] chain) {
+        long length = blocks.byteSize();
+        if (length == 0) {
+            return;
+        }
+        long mark = cipherMetrics.start();
+        long nextChainHi = blocks.get(LONG, length - 16);
+        long nextChainLo = blocks.get(LONG, length - 8);
+        for (long block = length - 16; block > 0; block -= 16) {
+            blocks.set(LONG, block, blocks.get(LONG, block) ^ blocks.get(LONG, block - 16));
+            blocks.set(LONG, block + 8, blocks.get(LONG, block + 8) ^ blocks.get(LONG, block - 8));
+        }
+        blocks.set(LONG, 0, blocks.get(LONG, 0) ^ (long) LONGS.get(chain, 0));
+        blocks.set(LONG, 8, blocks.get(LONG, 8) ^ (long) LONGS.get(chain, 8));
+        LONGS.set(chain, 0, nextChainHi);
+        LONGS.set(chain, 8, nextChainLo);
+        mark = cipherMetrics.stop(Operation.DECRYPT, Stage.CBC, mark);
+
+        forEachRange(length, (offset, end) -> staged(blocks, offset, end,
+                (buffer, bufferLength) -> blockEngine.decryptRounds(buffer, 0, bufferLength, schedule)));
+        cipherMetrics.stop(Operation.DECRYPT, Stage.ROUNDS, mark);
+    }
+
+    private interface BufferOperation {
+        void apply(byte[] buffer, int length);
+    }
+
+    private static void staged(MemorySegment blocks, long offset, long end, BufferOperation operation) {
+        byte[] buffer = new byte[(int) Math.min(STAGING_BYTES, end - offset)];
+        try {
+            for (long position = offset; position < end; position += buffer.length) {
+                int length = (int) Math.min(buffer.length, end - position);
+                MemorySegment.copy(blocks, ValueLayout.JAVA_BYTE, position, buffer, 0, length);
+                operation.apply(buffer, length);
+                MemorySegment.copy(buffer, 0, blocks, ValueLayout.JAVA_BYTE, position, length);
+            }
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    private interface RangeOperation {
+        void apply(long offset, long end);
+    }
+
+    private void forEachRange(long length, RangeOperation operation) {
+        ForkJoinPool pool = blockEngine.parallelPool();
+        long thresholdBytes = blockEngine.parallelThresholdBlocks() * 16L;
+        if (pool == null || length < thresholdBytes) {
+            operation.apply(0, length);
+            return;
+        }
+        long rangeBytes = Math.max(Math.max(thresholdBytes, 16), length / 16 / (pool.getParallelism() * 4L) * 16);
+        List<Callable<Void>> ranges = new ArrayList<>();
+        for (long offset = 0; offset < length; offset += rangeBytes) {
+            long start = offset;
+            long end = Math.min(offset + rangeBytes, length);
+            ranges.add(() -> {
+                operation.apply(start, end);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> range : pool.invokeAll(ranges)) {
+                range.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof RuntimeException runtime) ? runtime : new IllegalStateException(e.getCause());
+        }
+    }
+}
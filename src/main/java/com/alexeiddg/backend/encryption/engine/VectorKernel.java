@@ -0,0 +1,11 @@
+package com.alexeiddg.backend.encryption.engine;
+
+// A RoundKernel backed by jdk.incubator.vector; only instantiated when that module is in the boot layer
+public interface VectorKernel extends RoundKernel {
+
+    void xorBlocks(byte[] blocks, int offset, int length, byte[] key);
+
+    void reverseCBC(byte[] blocks, int offset, int length, byte[] iv);
+
+    int vectorBitSize();
+}
@@ -0,0 +1,156 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+// Processes SPECIES.length() / 16 blocks per instruction; the tail that doesn't fill a vector goes to the scalar kernel
+class VectorRoundKernel implements VectorKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = (ByteVector.SPECIES_PREFERRED.length() >= 16)
+            ? ByteVector.SPECIES_PREFERRED
+            : ByteVector.SPECIES_128;
+
+    private final RoundKernel tailKernel;
+
+    VectorRoundKernel(RoundKernel tailKernel) {
+        this.tailKernel = tailKernel;
+    }
+
+    @Override
+    public int vectorBitSize() {
+        return SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public void encryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        int lanes = SPECIES.length();
+        int vectorLength = length - length % lanes;
+        int rounds = schedule.getRounds();
+
+        ByteVector[] keys = new ByteVector[rounds];
+        ByteVector[] shifts = new ByteVector[rounds];
+        VectorShuffle<Byte>[] shuffles = newShuffles(rounds);
+        for (int i = 0; i < rounds; i++) {
+            keys[i] = keyVector(schedule.getRoundKeys()[i]);
+            shifts[i] = shiftVector(schedule.getShiftAmounts()[i]);
+            shuffles[i] = shuffle(invert(schedule.getBlockPermutations()[i]));
+        }
+
+        for (int chunk = offset; chunk < offset + vectorLength; chunk += lanes) {
+            ByteVector vector = ByteVector.fromArray(SPECIES, blocks, chunk);
+            for (int i = 0; i < rounds; i++) {
+                vector = vector.lanewise(VectorOperators.XOR, keys[i])
+                        .lanewise(VectorOperators.ROL, shifts[i])
+                        .rearrange(shuffles[i]);
+            }
+            vector.intoArray(blocks, chunk);
+        }
+
+        if (vectorLength < length) {
+            tailKernel.encryptRounds(blocks, offset + vectorLength, length - vectorLength, schedule);
+        }
+    }
+
+    @Override
+    public void decryptRounds(byte[] blocks, int offset, int length, KeySchedule schedule) {
+        int lanes = SPECIES.length();
+        int vectorLength = length - length % lanes;
+        int rounds = schedule.getRounds();
+
+        ByteVector[] keys = new ByteVector[rounds];
+        ByteVector[] shifts = new ByteVector[rounds];
+        VectorShuffle<Byte>[] shuffles = newShuffles(rounds);
+        for (int i = 0; i < rounds; i++) {
+            keys[i] = keyVector(schedule.getRoundKeys()[i]);
+            shifts[i] = shiftVector(schedule.getShiftAmounts()[i]);
+            shuffles[i] = shuffle(schedule.getBlockPermutations()[i]);
+        }
+
+        for (int chunk = offset; chunk < offset + vectorLength; chunk += lanes) {
+            ByteVector vector = ByteVector.fromArray(SPECIES, blocks, chunk);
+            for (int i = rounds - 1; i >= 0; i--) {
+                vector = vector.rearrange(shuffles[i])
+                        .lanewise(VectorOperators.ROR, shifts[i])
+                        .lanewise(VectorOperators.XOR, keys[i]);
+            }
+            vector.intoArray(blocks, chunk);
+        }
+
+        if (vectorLength < length) {
+            tailKernel.decryptRounds(blocks, offset + vectorLength, length - vectorLength, schedule);
+        }
+    }
+
+    @Override
+    public void xorBlocks(byte[] blocks, int offset, int length, byte[] key) {
+        int lanes = SPECIES.length();
+        int vectorLength = length - length % lanes;
+        ByteVector keyVector = keyVector(key);
+
+        for (int chunk = offset; chunk < offset + vectorLength; chunk += lanes) {
+            ByteVector.fromArray(SPECIES, blocks, chunk).lanewise(VectorOperators.XOR, keyVector).intoArray(blocks, chunk);
+        }
+        for (int i = vectorLength; i < length; i++) {
+            blocks[offset + i] ^= key[i & 15];
+        }
+    }
+
+    // Walks backwards one vector at a time; each load of the predecessor blocks happens before they are overwritten
+    @Override
+    public void reverseCBC(byte[] blocks, int offset, int length, byte[] iv) {
+        int lanes = SPECIES.length();
+        int chunk = offset + length - lanes;
+
+        for (; chunk >= offset + 16; chunk -= lanes) {
+            ByteVector current = ByteVector.fromArray(SPECIES, blocks, chunk);
+            ByteVector previous = ByteVector.fromArray(SPECIES, blocks, chunk - 16);
+            current.lanewise(VectorOperators.XOR, previous).intoArray(blocks, chunk);
+        }
+
+        for (int i = chunk + lanes - offset - 1; i >= 0; i--) {
+            blocks[offset + i] ^= (i < 16) ? iv[i] : blocks[offset + i - 16];
+        }
+    }
+
+    private static ByteVector keyVector(byte[] key) {
+        byte[] pattern = new byte[SPECIES.length()];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = key[i & 15];
+        }
+        return ByteVector.fromArray(SPECIES, pattern, 0);
+    }
+
+    private static ByteVector shiftVector(int[] shiftAmounts) {
+        byte[] pattern = new byte[SPECIES.length()];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) shiftAmounts[(i & 15) >> 2];
+        }
+        return ByteVector.fromArray(SPECIES, pattern, 0);
+    }
+
+    // rearrange gathers, so lane i reads source lane sourceIndex[i & 15] of its own block
+    private static VectorShuffle<Byte> shuffle(int[] sourceIndex) {
+        int[] indexes = new int[SPECIES.length()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = (i & ~15) + sourceIndex[i & 15];
+        }
+        return VectorShuffle.fromArray(SPECIES, indexes, 0);
+    }
+
+    private static int[] invert(int[] blockPerm) {
+        int[] inverse = new int[16];
+        for (int i = 0; i < 16; i++) {
+            inverse[blockPerm[i]] = i;
+        }
+        return inverse;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VectorShuffle<Byte>[] newShuffles(int rounds) {
+        return new VectorShuffle[rounds];
+    }
+}
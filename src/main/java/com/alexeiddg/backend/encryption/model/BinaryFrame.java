@@ -0,0 +1,54 @@
+package com.alexeiddg.backend.encryption.model;
+
+// Binary wire frame for the octet-stream endpoints, no Base64 or hex anywhere:
+//   [version][flags][key: 16][rounds][length: 4, big-endian][ciphertext blocks: length]
+// The version selects the CipherFormat; the ciphertext carries no in-band header of its own
+public final class BinaryFrame {
+
+    public static final int HEADER_LENGTH = 23;
+
+    // Largest plaintext whose padded frame still fits in one array, and whose length in one int field
+    public static final int MAX_PAYLOAD_LENGTH = Integer.MAX_VALUE - 8 - HEADER_LENGTH - 16;
+
+    private static final int KEY_OFFSET = 2;
+    private static final int ROUNDS_OFFSET = 18;
+    private static final int LENGTH_OFFSET = 19;
+
+    public record Header(CipherFormat format, int flags, byte[] key, int rounds, int length) {
+    }
+
+    private BinaryFrame() {
+    }
+
+    public static void writeHeader(byte[] frame, CipherFormat format, int flags, byte[] key, int length) {
+        frame[0] = (byte) format.version();
+        frame[1] = (byte) flags;
+        System.arraycopy(key, 0, frame, KEY_OFFSET, 16);
+        frame[ROUNDS_OFFSET] = key[0];
+        frame[LENGTH_OFFSET] = (byte) (length >>> 24);
+        frame[LENGTH_OFFSET + 1] = (byte) (length >>> 16);
+        frame[LENGTH_OFFSET + 2] = (byte) (length >>> 8);
+        frame[LENGTH_OFFSET + 3] = (byte) length;
+    }
+
+    // Validates the header against the bytes actually received
+    public static Header readHeader(byte[] frame, int frameLength) {
+        if (frameLength < HEADER_LENGTH) {
+            throw new IllegalArgumentException("Frame shorter than its header");
+        }
+        CipherFormat format = CipherFormat.fromVersion(Byte.toUnsignedInt(frame[0]));
+        byte[] key = new byte[16];
+        System.arraycopy(frame, KEY_OFFSET, key, 0, 16);
+        int rounds = Byte.toUnsignedInt(frame[ROUNDS_OFFSET]);
+        int length = ((frame[LENGTH_OFFSET] & 0xFF) << 24) | ((frame[LENGTH_OFFSET + 1] & 0xFF) << 16)
+                | ((frame[LENGTH_OFFSET + 2] & 0xFF) << 8) | (frame[LENGTH_OFFSET + 3] & 0xFF);
+
+        if (rounds != Byte.toUnsignedInt(key[0])) {
+            throw new IllegalArgumentException("Round count does not match the key");
+        }
+        if (length <= 0 || length % 16 != 0 || length != frameLength - HEADER_LENGTH) {
+            throw new IllegalArgumentException("Ciphertext length must be a non-zero multiple of 16 matching the frame");
+        }
+        return new Header(format, CipherFormat.checkFlags(Byte.toUnsignedInt(frame[1])), key, rounds, length);
+    }
+}
@@ -0,0 +1,72 @@
+package com.alexeiddg.backend.encryption.model;
+
+// Ciphertext layouts. V1 is bare 16-byte blocks; V2 prefixes [version][flags], so a V2 ciphertext is always
+// 2 bytes past a block boundary and can never be mistaken for V1
+public enum CipherFormat {
+    V1(1, 0),
+    V2(2, 2);
+
+    // Header/frame flag bits; the plaintext was deflated before padding
+    public static final int FLAG_DEFLATE = 0x01;
+    private static final int KNOWN_FLAGS = FLAG_DEFLATE;
+
+    private final int version;
+    private final int headerLength;
+
+    CipherFormat(int version, int headerLength) {
+        this.version = version;
+        this.headerLength = headerLength;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int headerLength() {
+        return headerLength;
+    }
+
+    public void writeHeader(byte[] cipherBytes, int flags) {
+        if (headerLength > 0) {
+            cipherBytes[0] = (byte) version;
+            cipherBytes[1] = (byte) flags;
+        }
+    }
+
+    public int flags(byte[] cipherBytes) {
+        int flags = (headerLength > 0) ? Byte.toUnsignedInt(cipherBytes[1]) : 0;
+        return checkFlags(flags);
+    }
+
+    public static int checkFlags(int flags) {
+        if ((flags & ~KNOWN_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unsupported cipher format flags " + flags);
+        }
+        return flags;
+    }
+
+    public static CipherFormat fromVersion(int version) {
+        for (CipherFormat format : values()) {
+            if (format.version == version) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported cipher format version " + version);
+    }
+
+    public static CipherFormat detect(byte[] cipherBytes) {
+        return detect(cipherBytes.length, cipherBytes);
+    }
+
+    // For ciphertexts that are not fully decoded: the total length plus at least their first byte
+    public static CipherFormat detect(long length, byte[] header) {
+        if (length % 16 != 2) {
+            return V1;
+        }
+        CipherFormat format = fromVersion(Byte.toUnsignedInt(header[0]));
+        if (format.headerLength == 0) {
+            throw new IllegalArgumentException("Unsupported cipher format version " + format.version);
+        }
+        return format;
+    }
+}
@@ -0,0 +1,15 @@
+package com.alexeiddg.backend.encryption.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter @Setter
+public class EncryptionAppendRequest {
+    String cipherText;
+    String clientKey;
+    String text;
+}
@@ -0,0 +1,12 @@
+package com.alexeiddg.backend.encryption.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+// The decoded ciphertext is cut at offset (its old last block) and the blocks in cipherText appended
+@AllArgsConstructor @Getter @Setter
+public class EncryptionAppendResponse {
+    private long offset;
+    private String cipherText;
+}
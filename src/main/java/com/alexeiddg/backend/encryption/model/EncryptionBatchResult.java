@@ -0,0 +1,26 @@
+package com.alexeiddg.backend.encryption.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@AllArgsConstructor @Getter @Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EncryptionBatchResult {
+    private int index;
+    private String status;
+    private String cipherText;
+    private String encryptionKey;
+    private Integer iterations;
+    private String error;
+
+    public static EncryptionBatchResult ok(int index, EncryptionResponse response) {
+        return new EncryptionBatchResult(index, "OK", response.getCipherText(), response.getEncryptionKey(),
+                response.getIterations(), null);
+    }
+
+    public static EncryptionBatchResult failed(int index, Exception e) {
+        return new EncryptionBatchResult(index, "ERROR", null, null, null, String.valueOf(e.getMessage()));
+    }
+}
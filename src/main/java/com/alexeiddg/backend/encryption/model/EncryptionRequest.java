@@ -10,4 +10,7 @@ import lombok.AllArgsConstructor;
 @Getter @Setter
 public class EncryptionRequest {
     private String text;
+
+    // Skips compression so AppendService can extend the ciphertext later
+    private boolean appendable;
 }
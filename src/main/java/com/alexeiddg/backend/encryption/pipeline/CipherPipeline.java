@@ -0,0 +1,96 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+// An ordered list of stages; the decrypt path is always derived from it (inverses, last stage first)
+// rather than written out by hand
+public final class CipherPipeline {
+
+    private static final MethodType BLOCK_OPERATION = MethodType.methodType(void.class, byte[].class, int.class);
+
+    private final List<CipherStage> stages;
+
+    private CipherPipeline(List<CipherStage> stages) {
+        this.stages = List.copyOf(stages);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // The cipher's layout: substitution once, then XOR / rotate / transpose per round (CBC chains
+    // across blocks, so it stays in the engine)
+    public static CipherPipeline of(KeySchedule schedule) {
+        Builder builder = builder().stage(new SubstitutionStage(schedule.getSBox(), schedule.getInverseSBox()));
+        for (int i = 0; i < schedule.getRounds(); i++) {
+            builder.stage(XorStage.of(schedule.getRoundKeys()[i]))
+                    .stage(RotateStage.of(schedule.getShiftAmounts()[i]))
+                    .stage(TransposeStage.of(schedule.getBlockPermutations()[i]));
+        }
+        return builder.build();
+    }
+
+    public List<CipherStage> stages() {
+        return stages;
+    }
+
+    // Binds every stage into one (byte[], int) handle; once hot, HotSpot customizes the handle's
+    // lambda forms with the bound stages as constants and, the stages being records, folds their
+    // fields too (the key arrays' references, not their wipeable contents), so each schedule ends up
+    // with its own straight-line block kernel
+    public CompiledPipeline compile() {
+        return new CompiledPipeline(chain(stages, "forward"), chain(stages.reversed(), "inverse"), stages);
+    }
+
+    // Balanced tree of folds rather than a linear chain, keeping the inlining depth at log2(stages)
+    private static MethodHandle chain(List<CipherStage> stages, String operation) {
+        if (stages.isEmpty()) {
+            return MethodHandles.empty(BLOCK_OPERATION);
+        }
+        if (stages.size() == 1) {
+            return bind(stages.getFirst(), operation);
+        }
+        int half = stages.size() / 2;
+        MethodHandle first = chain(stages.subList(0, half), operation);
+        MethodHandle second = chain(stages.subList(half, stages.size()), operation);
+        return MethodHandles.foldArguments(second, first);
+    }
+
+    // Resolved on the stage's own class, so the call is a plain virtual call with no interface receiver check
+    private static MethodHandle bind(CipherStage stage, String operation) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            return lookup.findVirtual(stage.getClass(), operation, BLOCK_OPERATION).bindTo(stage);
+        } catch (IllegalAccessException e) {
+            try {
+                return lookup.findVirtual(CipherStage.class, operation, BLOCK_OPERATION).bindTo(stage);
+            } catch (ReflectiveOperationException unexpected) {
+                throw new IllegalStateException(unexpected);
+            }
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Builder {
+        private final List<CipherStage> stages = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder stage(CipherStage stage) {
+            stages.add(stage);
+            return this;
+        }
+
+        public CipherPipeline build() {
+            return new CipherPipeline(stages);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+// One reversible step over the 16-byte block at blocks[block]; implementations carry their key
+// material already derived, so nothing is recomputed per block or per round
+public interface CipherStage {
+
+    void forward(byte[] blocks, int block);
+
+    void inverse(byte[] blocks, int block);
+
+    // Zeroes the key material the stage holds once its schedule is released
+    void wipe();
+}
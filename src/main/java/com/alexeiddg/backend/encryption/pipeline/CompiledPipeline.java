@@ -0,0 +1,33 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+// A pipeline bound to one key schedule: encrypt runs every stage forward, decrypt every inverse in reverse
+public record CompiledPipeline(MethodHandle forward, MethodHandle inverse, List<CipherStage> stages) {
+
+    public void encrypt(byte[] blocks, int offset, int length) {
+        run(forward, blocks, offset, length);
+    }
+
+    public void decrypt(byte[] blocks, int offset, int length) {
+        run(inverse, blocks, offset, length);
+    }
+
+    // The handles stay bound to the stages, so a wiped pipeline must not run again
+    public void wipe() {
+        stages.forEach(CipherStage::wipe);
+    }
+
+    private static void run(MethodHandle kernel, byte[] blocks, int offset, int length) {
+        try {
+            for (int block = offset; block < offset + length; block += 16) {
+                kernel.invokeExact(blocks, block);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
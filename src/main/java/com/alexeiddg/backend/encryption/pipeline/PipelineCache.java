@@ -0,0 +1,32 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Compiled pipelines for the pipeline kernel, keyed by schedule identity; an entry's stages are wiped
+// and dropped when the schedule's last lease is released
+@Service
+public class PipelineCache {
+
+    private final Map<KeySchedule, CompiledPipeline> pipelines = new ConcurrentHashMap<>();
+
+    public CompiledPipeline get(KeySchedule schedule) {
+        CompiledPipeline pipeline = pipelines.get(schedule);
+        if (pipeline == null) {
+            pipeline = pipelines.computeIfAbsent(schedule, key -> {
+                key.onDestroy(() -> {
+                    CompiledPipeline removed = pipelines.remove(key);
+                    if (removed != null) {
+                        removed.wipe();
+                    }
+                });
+                return CipherPipeline.of(key).compile();
+            });
+        }
+        return pipeline;
+    }
+}
@@ -0,0 +1,46 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Rotates every byte of row r left by shift r (0-7), two rows per long; the inverse rotates right
+public record RotateStage(int[] shifts) implements CipherStage {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    public static RotateStage of(int[] shiftAmounts) {
+        return new RotateStage(new int[]{shiftAmounts[0] & 7, shiftAmounts[1] & 7, shiftAmounts[2] & 7, shiftAmounts[3] & 7});
+    }
+
+    @Override
+    public void forward(byte[] blocks, int block) {
+        LONGS.set(blocks, block, rotate((long) LONGS.get(blocks, block), shifts[0], shifts[1]));
+        LONGS.set(blocks, block + 8, rotate((long) LONGS.get(blocks, block + 8), shifts[2], shifts[3]));
+    }
+
+    @Override
+    public void inverse(byte[] blocks, int block) {
+        LONGS.set(blocks, block, rotate((long) LONGS.get(blocks, block), (8 - shifts[0]) & 7, (8 - shifts[1]) & 7));
+        LONGS.set(blocks, block + 8, rotate((long) LONGS.get(blocks, block + 8), (8 - shifts[2]) & 7, (8 - shifts[3]) & 7));
+    }
+
+    @Override
+    public void wipe() {
+        Arrays.fill(shifts, 0);
+    }
+
+    private static long rotate(long value, int topShift, int bottomShift) {
+        return ((value << topShift) & (upperMask(topShift) << 32)) | ((value >>> (8 - topShift)) & (lowerMask(topShift) << 32))
+                | ((value << bottomShift) & upperMask(bottomShift)) | ((value >>> (8 - bottomShift)) & lowerMask(bottomShift));
+    }
+
+    private static long upperMask(int shift) {
+        return ((0xFF << shift) & 0xFF) * 0x01010101L;
+    }
+
+    private static long lowerMask(int shift) {
+        return (0xFF >>> (8 - shift)) * 0x01010101L;
+    }
+}
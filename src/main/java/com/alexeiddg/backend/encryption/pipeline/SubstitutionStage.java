@@ -0,0 +1,28 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import java.util.Arrays;
+
+public record SubstitutionStage(byte[] sBox, byte[] inverseSBox) implements CipherStage {
+
+    @Override
+    public void forward(byte[] blocks, int block) {
+        substitute(blocks, block, sBox);
+    }
+
+    @Override
+    public void inverse(byte[] blocks, int block) {
+        substitute(blocks, block, inverseSBox);
+    }
+
+    @Override
+    public void wipe() {
+        Arrays.fill(sBox, (byte) 0);
+        Arrays.fill(inverseSBox, (byte) 0);
+    }
+
+    private static void substitute(byte[] blocks, int block, byte[] table) {
+        for (int i = block; i < block + 16; i++) {
+            blocks[i] = table[blocks[i] & 0xFF];
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Block permutation, forward moves byte i to blockPerm[i]; both directions are kept as gathers
+// (output i reads input source[i]) over the block held in two longs, so no scratch array is needed
+public record TransposeStage(int[] forwardSource, int[] inverseSource) implements CipherStage {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    public static TransposeStage of(int[] blockPerm) {
+        int[] forwardSource = new int[16];
+        for (int i = 0; i < 16; i++) {
+            forwardSource[blockPerm[i]] = i;
+        }
+        return new TransposeStage(forwardSource, blockPerm.clone());
+    }
+
+    @Override
+    public void forward(byte[] blocks, int block) {
+        gather(blocks, block, forwardSource);
+    }
+
+    @Override
+    public void inverse(byte[] blocks, int block) {
+        gather(blocks, block, inverseSource);
+    }
+
+    @Override
+    public void wipe() {
+        Arrays.fill(forwardSource, 0);
+        Arrays.fill(inverseSource, 0);
+    }
+
+    private static void gather(byte[] blocks, int block, int[] source) {
+        long hi = (long) LONGS.get(blocks, block);
+        long lo = (long) LONGS.get(blocks, block + 8);
+        for (int i = 0; i < 16; i++) {
+            int from = source[i];
+            blocks[block + i] = (byte) ((from < 8) ? hi >>> (56 - from * 8) : lo >>> (120 - from * 8));
+        }
+    }
+}
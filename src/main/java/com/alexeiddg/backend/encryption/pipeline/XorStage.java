@@ -0,0 +1,32 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// The round key as two longs, kept in an array so it can be wiped; XOR is its own inverse
+public record XorStage(long[] key) implements CipherStage {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    public static XorStage of(byte[] roundKey) {
+        return new XorStage(new long[]{(long) LONGS.get(roundKey, 0), (long) LONGS.get(roundKey, 8)});
+    }
+
+    @Override
+    public void forward(byte[] blocks, int block) {
+        LONGS.set(blocks, block, (long) LONGS.get(blocks, block) ^ key[0]);
+        LONGS.set(blocks, block + 8, (long) LONGS.get(blocks, block + 8) ^ key[1]);
+    }
+
+    @Override
+    public void inverse(byte[] blocks, int block) {
+        forward(blocks, block);
+    }
+
+    @Override
+    public void wipe() {
+        Arrays.fill(key, 0L);
+    }
+}
@@ -0,0 +1,141 @@
+package com.alexeiddg.backend.encryption.service;
+
+import com.alexeiddg.backend.decryption.service.CiphertextSource;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.model.EncryptionAppendResponse;
+import com.alexeiddg.backend.encryption.stream.EncryptingOutputStream;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleCache;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// Appends plaintext to an existing ciphertext without touching what came before: only the padded final
+// block is decrypted, its data bytes are re-encrypted ahead of the new plaintext, and CBC continues from
+// the block before it. The new blocks replace the old final block, so the work follows the appended data
+@Service
+public class AppendService {
+
+    @Autowired
+    private KeyScheduleCache keyScheduleCache;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private CipherMetrics cipherMetrics;
+
+    @Value("${cipher.stream.buffer-size:65536}")
+    private int streamBufferSize;
+
+    // Base64url ciphertext from /api/encrypt; only its last two blocks are decoded
+    public EncryptionAppendResponse append(String clientKey, String cipherText, String text)
+            throws NoSuchAlgorithmException, IOException {
+        CiphertextSource decoded = CiphertextSource.ofBase64(cipherText, 0);
+        byte[] header = new byte[(int) Math.min(2, Math.max(decoded.length(), 0))];
+        decoded.read(0, header, 0, header.length);
+        CipherFormat format = CipherFormat.detect(decoded.length(), header);
+        if ((format.flags(header) & CipherFormat.FLAG_DEFLATE) != 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Deflated ciphertexts cannot be appended to; encrypt with \"appendable\": true");
+        }
+
+        CiphertextSource blocks = CiphertextSource.ofBase64(cipherText, format.headerLength());
+        byte[] tail = readTail(blocks);
+        ByteArrayOutputStream appended = new ByteArrayOutputStream();
+        try (KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.fromHex(clientKey), format)) {
+            continueChain(schedule, tail, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), appended);
+        }
+        long offset = format.headerLength() + blocks.length() - 16;
+        return new EncryptionAppendResponse(offset, Base64.getUrlEncoder().encodeToString(appended.toByteArray()));
+    }
+
+    // Raw ciphertext (/api/encrypt/stream, batch mode) known only by its last one or two blocks; writes
+    // the blocks that replace the last one and returns the plaintext bytes appended
+    public long appendStream(String clientKey, byte[] tail, InputStream in, OutputStream out)
+            throws NoSuchAlgorithmException, IOException {
+        if (tail.length != 16 && tail.length != 32) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The ciphertext tail must be its last one or two blocks");
+        }
+        try (KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.fromHex(clientKey))) {
+            return continueChain(schedule, tail, in, out);
+        }
+    }
+
+    // Raw ciphertext file, extended in place: the old final block is overwritten and the file grows. A wrong
+    // key that slips past the padding check (see continueChain) overwrites that block with garbage, losing its
+    // last 1-15 plaintext bytes, so only call this with a key already known to decrypt the file
+    public long appendFile(Path file, String clientKey, InputStream in) throws NoSuchAlgorithmException, IOException {
+        try (FileChannel channel = FileChannel.open(file, READ, WRITE);
+             KeySchedule schedule = keyScheduleCache.getSchedule(KeyMatrix.fromHex(clientKey))) {
+            byte[] tail = readTail(CiphertextSource.of(channel, 0, channel.size()));
+            channel.position(channel.size() - 16);
+            return continueChain(schedule, tail, in, Channels.newOutputStream(channel));
+        }
+    }
+
+    // The last two blocks (or the only one) of a block-aligned ciphertext
+    private static byte[] readTail(CiphertextSource blocks) throws IOException {
+        long length = blocks.length();
+        if (length <= 0 || length % 16 != 0) {
+            throw new IllegalArgumentException("Ciphertext length must be a non-zero multiple of 16");
+        }
+        byte[] tail = new byte[(int) Math.min(length, 32)];
+        blocks.read(length - tail.length, tail, 0, tail.length);
+        return tail;
+    }
+
+    private long continueChain(KeySchedule schedule, byte[] tail, InputStream in, OutputStream out) throws IOException {
+        byte[] chain = (tail.length == 32) ? Arrays.copyOf(tail, 16) : schedule.getIv().clone();
+        byte[] last = Arrays.copyOfRange(tail, tail.length - 16, tail.length);
+        byte[] lastChain = chain.clone();
+        blockEngine.decryptChained(last, 0, 16, schedule, lastChain);
+        Arrays.fill(lastChain, (byte) 0);
+        // Checked before anything is written, but this only catches most wrong keys: a wrong key decrypts the
+        // block to noise, which still ends in valid padding about 1 time in 256 and is then re-encrypted as data.
+        // Nothing in the ciphertext authenticates the key, so the caller has to know it is the right one
+        int kept;
+        try {
+            kept = StringToBitstream.unpaddedLength(last, 0, 16);
+        } catch (IllegalArgumentException e) {
+            Arrays.fill(last, (byte) 0);
+            throw e;
+        }
+
+        // A failed read still closes the stream with a padded final block, so the ciphertext stays
+        // decryptable and holds whatever was appended before the failure
+        long appended;
+        try (EncryptingOutputStream encrypting = new EncryptingOutputStream(out, blockEngine, schedule, streamBufferSize, chain)) {
+            encrypting.write(last, 0, kept);
+            appended = in.transferTo(encrypting);
+            cipherMetrics.message(Operation.ENCRYPT, schedule.getRounds(), (int) Math.min(Integer.MAX_VALUE, (kept + appended) / 16 + 1));
+        } finally {
+            Arrays.fill(last, (byte) 0);
+            Arrays.fill(chain, (byte) 0);
+        }
+        return appended;
+    }
+}
@@ -36,6 +36,20 @@ public class CBCService {
         return plaintextBlocks;
     }
 
+    // In-place CBC over the 16-byte blocks in [offset, offset + length)
+    public void applyCBC(byte[] blocks, int offset, int length, byte[] iv) {
+        for (int i = 0; i < length; i++) {
+            blocks[offset + i] ^= (i < 16) ? iv[i] : blocks[offset + i - 16];
+        }
+    }
+
+    // Walks backwards so every block is still XORed with its predecessor's ciphertext
+    public void reverseCBC(byte[] blocks, int offset, int length, byte[] iv) {
+        for (int i = length - 1; i >= 0; i--) {
+            blocks[offset + i] ^= (i < 16) ? iv[i] : blocks[offset + i - 16];
+        }
+    }
+
     private byte[][] xorBlock(byte[][] block1, byte[][] block2) {
         byte[][] result = new byte[4][4];
         for (int row = 0; row < 4; row++) {
@@ -0,0 +1,100 @@
+package com.alexeiddg.backend.encryption.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Optional Deflate stage ahead of padding: fewer blocks means fewer passes of every round. Payloads that
+// don't shrink by at least min-ratio and one whole block are sent uncompressed; large ones are judged on
+// a prefix first so incompressible data costs one small pass. Off by default: the ciphertext length then
+// reveals how compressible the plaintext is
+@Service
+public class CompressionService {
+
+    private static final int PROBE_LENGTH = 4096;
+
+    @Value("${cipher.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cipher.compression.level:1}")
+    private int level;
+
+    @Value("${cipher.compression.min-size:256}")
+    private int minSize;
+
+    // Compressed size must be at most this fraction of the original
+    @Value("${cipher.compression.min-ratio:0.9}")
+    private double minRatio;
+
+    // Guards decryption against payloads that inflate without bound
+    @Value("${cipher.compression.max-inflated-size:268435456}")
+    private int maxInflatedSize;
+
+    // Deflated copy of data[offset, offset + length) when that pays off, otherwise null
+    public byte[] compress(byte[] data, int offset, int length) {
+        if (!enabled || length < minSize) {
+            return null;
+        }
+        Deflater deflater = new Deflater(level);
+        try {
+            if (length > PROBE_LENGTH * 4) {
+                deflater.setInput(data, offset, PROBE_LENGTH);
+                deflater.finish();
+                if (deflate(deflater, new byte[(int) (PROBE_LENGTH * minRatio)]) < 0) {
+                    return null;
+                }
+                deflater.reset();
+            }
+
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            int limit = (int) Math.min(length * minRatio, (length / 16) * 16 - 1);
+            byte[] compressed = new byte[Math.max(0, limit)];
+            int compressedLength = deflate(deflater, compressed);
+            return (compressedLength < 0) ? null : Arrays.copyOf(compressed, compressedLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public byte[] inflate(byte[] data, int offset, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.min(maxInflatedSize, length * 4));
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed payload");
+                }
+                if (output.size() + inflated > maxInflatedSize) {
+                    throw new IllegalArgumentException("Decompressed payload exceeds " + maxInflatedSize + " bytes");
+                }
+                output.write(chunk, 0, inflated);
+            }
+            return output.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Output length, or -1 as soon as it would not fit in target
+    private static int deflate(Deflater deflater, byte[] target) {
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == target.length) {
+                return -1;
+            }
+            length += deflater.deflate(target, length, target.length - length);
+        }
+        return length;
+    }
+}
@@ -1,17 +1,49 @@
 package com.alexeiddg.backend.encryption.service;
 
+import com.alexeiddg.backend.encryption.engine.BatchingEngine;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.engine.SegmentEngine;
+import com.alexeiddg.backend.encryption.stream.EncryptingOutputStream;
 import com.alexeiddg.backend.encryption.util.CipherTextGenerator;
+import com.alexeiddg.backend.util.CipherFutures;
+import com.alexeiddg.backend.util.SegmentStreams;
 import com.alexeiddg.backend.util.StringToBitstream;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.model.EncryptionBatchResult;
+import com.alexeiddg.backend.encryption.model.EncryptionRequest;
 import com.alexeiddg.backend.encryption.model.EncryptionResponse;
-import com.alexeiddg.backend.util.HashService;
 import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.model.PreparedKey;
+import com.alexeiddg.backend.keygen.service.KeySchedulePool;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.metrics.CipherMetrics.Stage;
 import com.alexeiddg.backend.keygen.service.KeyGenService;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
 
 
 @Service
@@ -21,33 +53,148 @@ public class EncryptionService {
     private KeyGenService keyGenService;
 
     @Autowired
-    private SBoxService sBoxService;
+    private KeyScheduleService keyScheduleService;
 
     @Autowired
-    private XORService xorService;
+    private BlockEngine blockEngine;
 
     @Autowired
-    private TransformService transformService;
+    private CipherTextGenerator cipherTextGenerator;
 
     @Autowired
-    private TransposeService transposeService;
+    private ExecutorService cipherExecutor;
 
     @Autowired
-    private CBCService cbcService;
+    private CipherMetrics cipherMetrics;
 
     @Autowired
-    private CipherTextGenerator cipherTextGenerator;
+    private KeySchedulePool keySchedulePool;
+
+    @Autowired
+    private CompressionService compressionService;
 
     @Autowired
-    private HashService hashService;
+    private SegmentEngine segmentEngine;
+
+    @Autowired
+    private BatchingEngine batchingEngine;
+
+    // Format written by /encrypt and the JSON batch endpoint; decryption accepts every format
+    @Value("${cipher.format:v2}")
+    private CipherFormat cipherFormat;
+
+    @Value("${cipher.binary.max-payload-size:67108864}")
+    private int maxFrameSize;
+
+    @Value("${cipher.stream.buffer-size:65536}")
+    private int streamBufferSize;
+
+    @Value("${cipher.engine.off-heap.enabled:true}")
+    private boolean offHeapEnabled;
+
+    @Value("${cipher.engine.off-heap.threshold-bytes:16777216}")
+    private long offHeapThreshold;
+
+    // Frame sizes are computed in int arithmetic, which a larger limit would overflow
+    @PostConstruct
+    void validate() {
+        if (maxFrameSize < 0 || maxFrameSize > BinaryFrame.MAX_PAYLOAD_LENGTH) {
+            throw new IllegalArgumentException("cipher.binary.max-payload-size must be between 0 and "
+                    + BinaryFrame.MAX_PAYLOAD_LENGTH + ", was " + maxFrameSize);
+        }
+    }
 
-    private KeyMatrix getEncryptionKey() {
+    public KeyMatrix getEncryptionKey() {
         return keyGenService.generateKey();
     }
 
+    // Pops a key whose schedule the pool already built; keygen time is then just the queue poll
     public EncryptionResponse encrypt(String text) throws NoSuchAlgorithmException {
+        long mark = cipherMetrics.start();
+        try (PreparedKey prepared = keySchedulePool.take()) {
+            cipherMetrics.stop(Operation.ENCRYPT, Stage.KEYGEN, mark);
+            return encrypt(text, prepared.key(), prepared.schedule(), keySchedulePool.format());
+        }
+    }
+
+    // Runs on the compute executor so the request thread is released while the rounds run; small
+    // messages then wait for the batching engine without holding a compute thread
+    public CompletableFuture<EncryptionResponse> encryptAsync(String text) {
+        return encryptAsync(text, false);
+    }
+
+    // An appendable ciphertext is never deflated, since only uncompressed ones can be appended to
+    public CompletableFuture<EncryptionResponse> encryptAsync(String text, boolean appendable) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long mark = cipherMetrics.start();
+                PreparedKey prepared = keySchedulePool.take();
+                cipherMetrics.stop(Operation.ENCRYPT, Stage.KEYGEN, mark);
+                return encryptBatched(text, prepared.key(), prepared.schedule(), keySchedulePool.format(), !appendable);
+            } catch (NoSuchAlgorithmException e) {
+                throw new CompletionException(e);
+            }
+        }, cipherExecutor).thenCompose(Function.identity());
+    }
 
-        KeyMatrix encryptionKey = getEncryptionKey();
+    // Keys for the whole batch come from one entropy draw; items then run concurrently, each with its own status
+    public List<CompletableFuture<EncryptionBatchResult>> encryptBatch(List<EncryptionRequest> requests) {
+        List<KeyMatrix> keys = keyGenService.generateKeys(requests.size());
+        List<CompletableFuture<EncryptionBatchResult>> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            results.add(CipherFutures.supplyAsync(() -> {
+                try {
+                    KeySchedule schedule = keyScheduleService.buildSchedule(keys.get(index), cipherFormat);
+                    EncryptionRequest request = requests.get(index);
+                    return encryptBatched(request.getText(), keys.get(index), schedule, cipherFormat, !request.isAppendable());
+                } catch (Exception e) {
+                    return CompletableFuture.<EncryptionResponse>failedFuture(e);
+                }
+            }, cipherExecutor).thenCompose(Function.identity()).handle((response, e) -> (e == null)
+                    ? EncryptionBatchResult.ok(index, response)
+                    : EncryptionBatchResult.failed(index, CipherFutures.unwrap(e))));
+        }
+        return results;
+    }
+
+    public EncryptionResponse encrypt(String text, KeyMatrix encryptionKey) throws NoSuchAlgorithmException {
+        return encrypt(text, encryptionKey, cipherFormat);
+    }
+
+    public EncryptionResponse encrypt(String text, KeyMatrix encryptionKey, CipherFormat format) throws NoSuchAlgorithmException {
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(encryptionKey, format)) {
+            return encrypt(text, encryptionKey, schedule, format);
+        }
+    }
+
+    private EncryptionResponse encrypt(String text, KeyMatrix encryptionKey, KeySchedule schedule, CipherFormat format) {
+        PendingEncryption pending = prepare(text, encryptionKey, format, true);
+        blockEngine.encrypt(pending.blocks(), pending.offset(), pending.blocks().length - pending.offset(), schedule);
+        return finish(pending);
+    }
+
+    // Takes over the schedule's lease and releases it once the rounds are done
+    private CompletableFuture<EncryptionResponse> encryptBatched(String text, KeyMatrix encryptionKey, KeySchedule schedule,
+                                                             CipherFormat format, boolean compress) {
+        CompletableFuture<Void> rounds;
+        PendingEncryption pending;
+        try {
+            pending = prepare(text, encryptionKey, format, compress);
+            rounds = batchingEngine.encrypt(pending.blocks(), pending.offset(), pending.blocks().length - pending.offset(), schedule)
+                    .whenComplete((done, e) -> schedule.close());
+        } catch (RuntimeException e) {
+            schedule.close();
+            throw e;
+        }
+        return CipherFutures.afterRounds(rounds, () -> finish(pending), cipherExecutor);
+    }
+
+    // Padded blocks with the format header written, ready for the rounds
+    private record PendingEncryption(byte[] blocks, int offset, String clientKey, int rounds) {
+    }
+
+    private PendingEncryption prepare(String text, KeyMatrix encryptionKey, CipherFormat format, boolean compress) {
 
         assert encryptionKey != null;
         byte[][] keyMatrix = encryptionKey.matrix();
@@ -56,26 +203,135 @@ public class EncryptionService {
         String clientKey = encryptionKey.flattenToHex();
 
         byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
-        byte[][][] xorResult = StringToBitstream.generateMatrixPadding(textBytes);
+        int offset = format.headerLength();
+        int flags = 0;
+        // Only formats with a header can mark a compressed payload
+        if (offset > 0 && compress) {
+            long mark = cipherMetrics.start();
+            byte[] compressed = compressionService.compress(textBytes, 0, textBytes.length);
+            cipherMetrics.stop(Operation.ENCRYPT, Stage.COMPRESSION, mark);
+            if (compressed != null) {
+                textBytes = compressed;
+                flags = CipherFormat.FLAG_DEFLATE;
+            }
+        }
 
-        byte[] keyBytes = encryptionKey.flattenMatrix();
-        byte[] sBox = SBoxService.generateSBox(keyBytes);
-        xorResult = sBoxService.applySBoxSubstitution(xorResult, sBox);
+        long mark = cipherMetrics.start();
+        byte[] blocks = StringToBitstream.generateBlockPadding(textBytes, offset);
+        format.writeHeader(blocks, flags);
+        cipherMetrics.stop(Operation.ENCRYPT, Stage.PADDING, mark);
+        return new PendingEncryption(blocks, offset, clientKey, firstByteAsNumber);
+    }
 
-        for (int i = 0; i < firstByteAsNumber; i++) {
-            xorResult = xorService.xorBitstream(xorResult, encryptionKey);
+    private EncryptionResponse finish(PendingEncryption pending) {
+        long mark = cipherMetrics.start();
+        String cipherText = cipherTextGenerator.returnCipherText(pending.blocks());
+        cipherMetrics.stop(Operation.ENCRYPT, Stage.ENCODE, mark);
+        cipherMetrics.message(Operation.ENCRYPT, pending.rounds(), (pending.blocks().length - pending.offset()) / 16);
 
-            for (int j = 0; j < xorResult.length; j++) {
-                xorResult[j] = transformService.performBitShift(xorResult[j], encryptionKey, true);
-                xorResult[j] = transposeService.transposeMatrix(xorResult[j], encryptionKey);
+        return new EncryptionResponse(cipherText, pending.clientKey(), pending.rounds());
+    }
+
+    // Reads the raw body straight into the frame buffer behind the header, encrypts it in place and
+    // writes the frame with a single write; no String, Base64 or hex form of anything is created
+    public void encryptFrame(InputStream in, long contentLength, OutputStream out) throws NoSuchAlgorithmException, IOException {
+        byte[] frame;
+        int plainLength;
+        if (contentLength >= 0) {
+            checkFrameSize(contentLength);
+            if (offHeapEnabled && contentLength >= offHeapThreshold) {
+                encryptFrameOffHeap(in, contentLength, out);
+                return;
             }
+            frame = new byte[BinaryFrame.HEADER_LENGTH + (int) (contentLength / 16 + 1) * 16];
+            plainLength = in.readNBytes(frame, BinaryFrame.HEADER_LENGTH, (int) contentLength);
+        } else {
+            byte[] body = in.readNBytes(maxFrameSize + 1);
+            checkFrameSize(body.length);
+            plainLength = body.length;
+            frame = new byte[BinaryFrame.HEADER_LENGTH + (plainLength / 16 + 1) * 16];
+            System.arraycopy(body, 0, frame, BinaryFrame.HEADER_LENGTH, plainLength);
+            Arrays.fill(body, (byte) 0);
+        }
 
-            encryptionKey = hashService.applySha256ToMatrix(encryptionKey);
+        // The deflated copy is always shorter, so it goes back into the same buffer
+        long mark = cipherMetrics.start();
+        int flags = 0;
+        byte[] compressed = compressionService.compress(frame, BinaryFrame.HEADER_LENGTH, plainLength);
+        if (compressed != null) {
+            Arrays.fill(frame, BinaryFrame.HEADER_LENGTH, BinaryFrame.HEADER_LENGTH + plainLength, (byte) 0);
+            System.arraycopy(compressed, 0, frame, BinaryFrame.HEADER_LENGTH, compressed.length);
+            plainLength = compressed.length;
+            Arrays.fill(compressed, (byte) 0);
+            flags = CipherFormat.FLAG_DEFLATE;
         }
+        mark = cipherMetrics.stop(Operation.ENCRYPT, Stage.COMPRESSION, mark);
+        int length = StringToBitstream.applyBlockPadding(frame, BinaryFrame.HEADER_LENGTH, plainLength);
+        cipherMetrics.stop(Operation.ENCRYPT, Stage.PADDING, mark);
 
-        xorResult = cbcService.applyCBC(xorResult, encryptionKey);
-        String cipherText = cipherTextGenerator.returnCipherText(xorResult);
+        try {
+            mark = cipherMetrics.start();
+            try (PreparedKey prepared = keySchedulePool.take()) {
+                cipherMetrics.stop(Operation.ENCRYPT, Stage.KEYGEN, mark);
+                KeySchedule schedule = prepared.schedule();
+                blockEngine.encrypt(frame, BinaryFrame.HEADER_LENGTH, length, schedule);
+                BinaryFrame.writeHeader(frame, keySchedulePool.format(), flags, schedule.getKey(), length);
+                cipherMetrics.message(Operation.ENCRYPT, schedule.getRounds(), length / 16);
+            }
+            out.write(frame, 0, BinaryFrame.HEADER_LENGTH + length);
+        } finally {
+            Arrays.fill(frame, 0, BinaryFrame.HEADER_LENGTH, (byte) 0);
+        }
+    }
+
+    // Large frames stay off-heap from request body to response; the arena is shared so the engine's
+    // workers can reach it and is closed, freeing the memory, before the request ends. Not compressed:
+    // deflating would need the payload on the heap
+    private void encryptFrameOffHeap(InputStream in, long contentLength, OutputStream out) throws NoSuchAlgorithmException, IOException {
+        byte[] header = new byte[BinaryFrame.HEADER_LENGTH];
+        try (Arena arena = Arena.ofShared()) {
+            MemorySegment payload = arena.allocate((contentLength / 16 + 1) * 16, 16);
+            try {
+                long plainLength = SegmentStreams.readFully(in, payload.asSlice(0, contentLength));
 
-        return new EncryptionResponse(cipherText, clientKey, firstByteAsNumber);
+                long mark = cipherMetrics.start();
+                long length = StringToBitstream.applyBlockPadding(payload, plainLength);
+                cipherMetrics.stop(Operation.ENCRYPT, Stage.PADDING, mark);
+                MemorySegment blocks = payload.asSlice(0, length);
+
+                mark = cipherMetrics.start();
+                try (PreparedKey prepared = keySchedulePool.take()) {
+                    cipherMetrics.stop(Operation.ENCRYPT, Stage.KEYGEN, mark);
+                    KeySchedule schedule = prepared.schedule();
+                    segmentEngine.encrypt(blocks, schedule);
+                    BinaryFrame.writeHeader(header, keySchedulePool.format(), 0, schedule.getKey(), (int) length);
+                    cipherMetrics.message(Operation.ENCRYPT, schedule.getRounds(), (int) (length / 16));
+                }
+                out.write(header);
+                SegmentStreams.write(blocks, out);
+            } finally {
+                // Still plaintext if reading or encrypting failed
+                payload.fill((byte) 0);
+            }
+        } finally {
+            Arrays.fill(header, (byte) 0);
+        }
+    }
+
+    private void checkFrameSize(long plainLength) {
+        if (plainLength > maxFrameSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Binary payloads are limited to " + maxFrameSize + " bytes, use /encrypt/stream");
+        }
+    }
+
+    // Streams plaintext from in to out as raw ciphertext, holding at most one buffer of data; that buffer
+    // stays on the heap, since it is already bounded by cipher.stream.buffer-size and an arena per request
+    // would not lower heap use
+    public long encryptStream(InputStream in, OutputStream out, KeyMatrix encryptionKey) throws NoSuchAlgorithmException, IOException {
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(encryptionKey);
+             EncryptingOutputStream encryptingStream = new EncryptingOutputStream(out, blockEngine, schedule, streamBufferSize)) {
+            return in.transferTo(encryptingStream);
+        }
     }
 }
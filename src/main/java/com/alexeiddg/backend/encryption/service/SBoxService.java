@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 @Service
 public class SBoxService {
@@ -31,6 +32,49 @@ public class SBoxService {
         return sBox;
     }
 
+    // Format v2: Fisher-Yates driven by the counter-mode stream SHA-256(SHA-256(key) || counter), one byte
+    // per draw with mask-and-reject, so no SHA1PRNG instance and about a dozen digest blocks per S-box
+    public static byte[] generateSBoxV2(byte[] key) throws NoSuchAlgorithmException {
+        byte[] sBox = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            sBox[i] = (byte) i;
+        }
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] seed = md.digest(key);
+        byte[] counterBytes = new byte[4];
+        byte[] stream = new byte[0];
+        int streamPosition = 0;
+        int counter = 0;
+
+        for (int i = 255; i > 0; i--) {
+            int mask = (Integer.highestOneBit(i) << 1) - 1;
+            int j;
+            do {
+                if (streamPosition == stream.length) {
+                    Arrays.fill(stream, (byte) 0);
+                    counterBytes[0] = (byte) (counter >>> 24);
+                    counterBytes[1] = (byte) (counter >>> 16);
+                    counterBytes[2] = (byte) (counter >>> 8);
+                    counterBytes[3] = (byte) counter;
+                    counter++;
+                    md.update(seed);
+                    stream = md.digest(counterBytes);
+                    streamPosition = 0;
+                }
+                j = stream[streamPosition++] & mask;
+            } while (j > i);
+
+            byte temp = sBox[i];
+            sBox[i] = sBox[j];
+            sBox[j] = temp;
+        }
+
+        Arrays.fill(seed, (byte) 0);
+        Arrays.fill(stream, (byte) 0);
+        return sBox;
+    }
+
     public byte[][][] applySBoxSubstitution(byte[][][] matrixChunks, byte[] sBox) {
         for (byte[][] matrix : matrixChunks) {
             for (int row = 0; row < matrix.length; row++) {
@@ -43,6 +87,12 @@ public class SBoxService {
         return matrixChunks;
     }
 
+    public void applySBoxSubstitution(byte[] blocks, int offset, int length, byte[] sBox) {
+        for (int i = offset; i < offset + length; i++) {
+            blocks[i] = sBox[blocks[i] & 0xFF];
+        }
+    }
+
     public static byte[] generateInverseSBox(byte[] sBox) {
         byte[] inverseSBox = new byte[256];
         for (int i = 0; i < 256; i++) {
@@ -23,6 +23,20 @@ public class TransformService {
         return shiftedMatrix;
     }
 
+    // In-place rotation of every 16-byte block in [offset, offset + length), one amount per row
+    public void performBitShift(byte[] blocks, int offset, int length, int[] shiftAmounts, boolean encrypt) {
+        for (int i = 0; i < length; i++) {
+            int shiftAmount = shiftAmounts[(i & 15) >> 2];
+            blocks[offset + i] = (encrypt)
+                    ? shiftLeft(blocks[offset + i], shiftAmount)
+                    : shiftRight(blocks[offset + i], shiftAmount);
+        }
+    }
+
+    public int[] calculateShiftAmounts(KeyMatrix keyMatrix) {
+        return calculateShiftAmounts(keyMatrix.matrix());
+    }
+
     private int[] calculateShiftAmounts(byte[][] keyMatrix) {
         int[] shiftAmounts = new int[4];
 
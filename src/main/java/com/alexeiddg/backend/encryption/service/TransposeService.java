@@ -26,6 +26,42 @@ public class TransposeService {
         return Arrays.stream(indices).mapToInt(Integer::intValue).toArray();
     }
 
+    public int[] generatePermutationFromKey(KeyMatrix keyMatrix) {
+        return generatePermutationFromKey(flattenKeyMatrix(keyMatrix.matrix()));
+    }
+
+    // Maps each source index of a flattened 4x4 block to its transposed index
+    public int[] generateBlockPermutation(int[] perm) {
+        int[] blockPerm = new int[16];
+        for (int row = 0; row < 4; row++) {
+            for (int col = 0; col < 4; col++) {
+                blockPerm[row * 4 + col] = perm[row] * 4 + perm[col];
+            }
+        }
+        return blockPerm;
+    }
+
+    // In-place transposition of every 16-byte block in [offset, offset + length)
+    public void transposeBlocks(byte[] blocks, int offset, int length, int[] blockPerm) {
+        byte[] scratch = new byte[16];
+        for (int block = offset; block < offset + length; block += 16) {
+            System.arraycopy(blocks, block, scratch, 0, 16);
+            for (int i = 0; i < 16; i++) {
+                blocks[block + blockPerm[i]] = scratch[i];
+            }
+        }
+    }
+
+    public void reverseTransposeBlocks(byte[] blocks, int offset, int length, int[] blockPerm) {
+        byte[] scratch = new byte[16];
+        for (int block = offset; block < offset + length; block += 16) {
+            System.arraycopy(blocks, block, scratch, 0, 16);
+            for (int i = 0; i < 16; i++) {
+                blocks[block + i] = scratch[blockPerm[i]];
+            }
+        }
+    }
+
     public byte[][] transposeMatrix(byte[][] matrix, KeyMatrix keyMatrix) {
         byte[][] transposedMatrix = new byte[4][4];
 
@@ -22,4 +22,11 @@ public class XORService {
         return resultChunks;
     }
 
+    // In-place XOR of every 16-byte block in [offset, offset + length) with the flattened key
+    public void xorBlocks(byte[] blocks, int offset, int length, byte[] key) {
+        for (int i = 0; i < length; i++) {
+            blocks[offset + i] ^= key[i & 15];
+        }
+    }
+
 }
@@ -0,0 +1,95 @@
+package com.alexeiddg.backend.encryption.stream;
+
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.util.StringToBitstream;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Encrypts whole blocks as the buffer fills; the ISO/IEC 7816-4 padding block is only written on close
+public class EncryptingOutputStream extends FilterOutputStream {
+
+    private final BlockEngine blockEngine;
+    private final KeySchedule schedule;
+    private final byte[] chain;
+    private final byte[] buffer;
+    private int count;
+    private boolean closed;
+
+    public EncryptingOutputStream(OutputStream out, BlockEngine blockEngine, KeySchedule schedule, int bufferSize) {
+        this(out, blockEngine, schedule, bufferSize, schedule.getIv());
+    }
+
+    // Continues an existing ciphertext whose last block is chain (copied) instead of starting from the IV
+    public EncryptingOutputStream(OutputStream out, BlockEngine blockEngine, KeySchedule schedule, int bufferSize, byte[] chain) {
+        super(out);
+        if (bufferSize < 16 || bufferSize % 16 != 0) {
+            throw new IllegalArgumentException("Buffer size must be a positive multiple of 16");
+        }
+        this.blockEngine = blockEngine;
+        this.schedule = schedule;
+        this.chain = chain.clone();
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[count++] = (byte) b;
+        if (count == buffer.length) {
+            writeBlocks();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int copied = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, copied);
+            count += copied;
+            off += copied;
+            len -= copied;
+            if (count == buffer.length) {
+                writeBlocks();
+            }
+        }
+    }
+
+    // Only whole blocks can leave before close, a trailing partial block stays buffered
+    @Override
+    public void flush() throws IOException {
+        writeBlocks();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlocks();
+            int paddedLength = StringToBitstream.applyBlockPadding(buffer, count);
+            blockEngine.encryptChained(buffer, 0, paddedLength, schedule, chain);
+            out.write(buffer, 0, paddedLength);
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+            Arrays.fill(chain, (byte) 0);
+            out.close();
+        }
+    }
+
+    private void writeBlocks() throws IOException {
+        int whole = count - count % 16;
+        if (whole == 0) {
+            return;
+        }
+        blockEngine.encryptChained(buffer, 0, whole, schedule, chain);
+        out.write(buffer, 0, whole);
+        System.arraycopy(buffer, whole, buffer, 0, count - whole);
+        count -= whole;
+    }
+}
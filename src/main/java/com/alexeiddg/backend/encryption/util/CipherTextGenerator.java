@@ -25,6 +25,10 @@ public class CipherTextGenerator {
         return encodeToBase64(cipherBytes);
     }
 
+    public String returnCipherText(byte[] blocks) {
+        return encodeToBase64(blocks);
+    }
+
     private String encodeToBase64(byte[] bytes) {
         return Base64.getUrlEncoder().encodeToString(bytes);
     }
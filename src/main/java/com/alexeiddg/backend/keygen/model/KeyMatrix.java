@@ -28,6 +28,16 @@ public record KeyMatrix(byte[][] matrix) {
         return flatKey;
     }
 
+    public static KeyMatrix fromHex(String hex) {
+        int len = hex.length();
+        byte[] data = new byte[len / 2];
+        for (int i = 0; i < len; i += 2) {
+            data[i / 2] = (byte) ((Character.digit(hex.charAt(i), 16) << 4)
+                    + Character.digit(hex.charAt(i + 1), 16));
+        }
+        return rebuildMatrix(data);
+    }
+
     public static KeyMatrix rebuildMatrix(byte[] array) {
         if (array.length != 16) {
             throw new IllegalArgumentException("Array must be 16 bytes to form a 4x4 matrix");
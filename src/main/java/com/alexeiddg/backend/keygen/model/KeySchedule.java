@@ -0,0 +1,92 @@
+package com.alexeiddg.backend.keygen.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Everything the rounds derive from a key, computed once: roundKeys[rounds] is the CBC IV
+@Getter
+public class KeySchedule implements AutoCloseable {
+    private final byte[] key;
+    private final int rounds;
+    private final byte[][] roundKeys;
+    private final int[][] shiftAmounts;
+    private final int[][] blockPermutations;
+    private final byte[] sBox;
+    private final byte[] inverseSBox;
+
+    // Starts with the creator's lease; the arrays are zeroed once the last lease is released
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger leases = new AtomicInteger(1);
+
+    // Run once the last lease is released, so constants a kernel derived from this schedule are wiped with it
+    @Getter(AccessLevel.NONE)
+    private final Queue<Runnable> destroyActions = new ConcurrentLinkedQueue<>();
+
+    public KeySchedule(byte[] key, int rounds, byte[][] roundKeys, int[][] shiftAmounts,
+                       int[][] blockPermutations, byte[] sBox, byte[] inverseSBox) {
+        this.key = key;
+        this.rounds = rounds;
+        this.roundKeys = roundKeys;
+        this.shiftAmounts = shiftAmounts;
+        this.blockPermutations = blockPermutations;
+        this.sBox = sBox;
+        this.inverseSBox = inverseSBox;
+    }
+
+    public byte[] getIv() {
+        return roundKeys[rounds];
+    }
+
+    public void onDestroy(Runnable action) {
+        destroyActions.add(action);
+    }
+
+    public long sizeInBytes() {
+        return 64L + key.length + sBox.length + inverseSBox.length
+                + (long) roundKeys.length * (16 + 16)
+                + (long) rounds * (4 * 4 + 16 * 4 + 32)
+                // fused kernel constants cached for this schedule, both directions
+                + (long) rounds * 2 * 256;
+    }
+
+    public boolean retain() {
+        int current;
+        do {
+            current = leases.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!leases.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (leases.decrementAndGet() == 0) {
+            destroy();
+        }
+    }
+
+    private void destroy() {
+        for (Runnable action = destroyActions.poll(); action != null; action = destroyActions.poll()) {
+            action.run();
+        }
+        Arrays.fill(key, (byte) 0);
+        for (byte[] roundKey : roundKeys) {
+            Arrays.fill(roundKey, (byte) 0);
+        }
+        for (int[] shift : shiftAmounts) {
+            Arrays.fill(shift, 0);
+        }
+        for (int[] perm : blockPermutations) {
+            Arrays.fill(perm, 0);
+        }
+        Arrays.fill(sBox, (byte) 0);
+        Arrays.fill(inverseSBox, (byte) 0);
+    }
+}
@@ -0,0 +1,10 @@
+package com.alexeiddg.backend.keygen.model;
+
+// A generated key together with its fully built schedule; closing it releases the schedule lease
+public record PreparedKey(KeyMatrix key, KeySchedule schedule) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        schedule.close();
+    }
+}
@@ -1,19 +1,21 @@
 package com.alexeiddg.backend.keygen.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.security.SecureRandom;
 
 import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.util.EntropyPool;
 
 @Service
 public class KeyEmbeddingService {
 
-    private static final SecureRandom random = new SecureRandom();
+    @Autowired
+    private EntropyPool entropyPool;
 
     public KeyMatrix embedKey(KeyMatrix entropyKey) {
         byte[][] matrix = entropyKey.matrix();
 
-        int randomInt = random.nextInt(24) + 1;
+        int randomInt = entropyPool.nextInt(24) + 1;
         byte randomByte = (byte) randomInt;
         matrix[0][0] = randomByte;
 
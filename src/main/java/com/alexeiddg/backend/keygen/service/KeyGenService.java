@@ -6,6 +6,10 @@ import org.springframework.stereotype.Service;
 import com.alexeiddg.backend.keygen.model.KeyMatrix;
 import com.alexeiddg.backend.util.EntropyHandler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 @Service
 public class KeyGenService {
 
@@ -23,9 +27,13 @@ public class KeyGenService {
             throw new IllegalArgumentException("Entropy must be 16 bytes long");
         }
 
+        return toKeyMatrix(normalizedEntropy, 0);
+    }
+
+    private KeyMatrix toKeyMatrix(byte[] entropy, int offset) {
         byte[][] matrix = new byte[4][4];
         for (int i = 0; i < 4; i++) {
-            System.arraycopy(normalizedEntropy, i * 4, matrix[i], 0, 4);
+            System.arraycopy(entropy, offset + i * 4, matrix[i], 0, 4);
         }
 
         return new KeyMatrix(matrix);
@@ -39,4 +47,14 @@ public class KeyGenService {
         KeyMatrix key = generateKeyFromEntropy();
         return embedKey(key);
     }
+
+    public List<KeyMatrix> generateKeys(int count) {
+        byte[] entropy = entropyHandler.getEntropy(count * 16);
+        List<KeyMatrix> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(embedKey(toKeyMatrix(entropy, i * 16)));
+        }
+        Arrays.fill(entropy, (byte) 0);
+        return keys;
+    }
 }
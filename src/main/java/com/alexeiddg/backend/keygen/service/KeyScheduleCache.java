@@ -0,0 +1,135 @@
+package com.alexeiddg.backend.keygen.service;
+
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU + TTL cache of key schedules, bounded by entry count and estimated bytes
+@Service
+public class KeyScheduleCache {
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Value("${cipher.key-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cipher.key-cache.max-entries:1024}")
+    private int maxEntries;
+
+    @Value("${cipher.key-cache.max-bytes:8388608}")
+    private long maxBytes;
+
+    @Value("${cipher.key-cache.ttl:10m}")
+    private Duration ttl;
+
+    private final LinkedHashMap<ByteBuffer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private record Entry(byte[] keyBytes, KeySchedule schedule, long expiresAt) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long bytes) {
+    }
+
+    // The returned schedule holds a lease for the caller, close it when done
+    public KeySchedule getSchedule(KeyMatrix key) throws NoSuchAlgorithmException {
+        return getSchedule(key, CipherFormat.V1);
+    }
+
+    // Entries are keyed by the key bytes plus the format version, since the formats derive different S-boxes
+    public KeySchedule getSchedule(KeyMatrix key, CipherFormat format) throws NoSuchAlgorithmException {
+        if (!enabled) {
+            return keyScheduleService.buildSchedule(key, format);
+        }
+
+        byte[] flatKey = key.flattenMatrix();
+        byte[] keyBytes = Arrays.copyOf(flatKey, 17);
+        Arrays.fill(flatKey, (byte) 0);
+        keyBytes[16] = (byte) format.version();
+        ByteBuffer lookup = ByteBuffer.wrap(keyBytes);
+        long now = System.nanoTime();
+
+        synchronized (this) {
+            Entry entry = entries.get(lookup);
+            if (entry != null && entry.expiresAt() - now > 0 && entry.schedule().retain()) {
+                hits.increment();
+                Arrays.fill(keyBytes, (byte) 0);
+                return entry.schedule();
+            }
+            if (entry != null) {
+                remove(lookup);
+            }
+        }
+
+        misses.increment();
+        KeySchedule schedule = keyScheduleService.buildSchedule(key, format);
+        if (schedule.sizeInBytes() > maxBytes) {
+            Arrays.fill(keyBytes, (byte) 0);
+            return schedule;
+        }
+
+        schedule.retain();
+        synchronized (this) {
+            remove(lookup);
+            entries.put(lookup, new Entry(keyBytes, schedule, now + ttl.toNanos()));
+            currentBytes += schedule.sizeInBytes();
+            evictOverflow();
+        }
+        return schedule;
+    }
+
+    public synchronized void clear() {
+        Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            release(entry);
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), currentBytes);
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<ByteBuffer, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || currentBytes > maxBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next().getValue();
+            iterator.remove();
+            release(eldest);
+            evictions.increment();
+        }
+    }
+
+    private void remove(ByteBuffer lookup) {
+        Entry entry = entries.remove(lookup);
+        if (entry != null) {
+            release(entry);
+            evictions.increment();
+        }
+    }
+
+    private void release(Entry entry) {
+        currentBytes -= entry.schedule().sizeInBytes();
+        Arrays.fill(entry.keyBytes(), (byte) 0);
+        entry.schedule().close();
+    }
+}
@@ -0,0 +1,186 @@
+package com.alexeiddg.backend.keygen.service;
+
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.PreparedKey;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Keys generated ahead of demand with their whole schedule built, so /encrypt only pops one. A background
+// thread keeps the queue at a target size that follows the measured take rate (enough for one horizon of
+// demand, within [min-size, capacity]); an empty queue falls back to generating inline and counts it
+@Slf4j
+@Service
+public class KeySchedulePool {
+
+    private static final long ADAPT_INTERVAL_NANOS = 250_000_000L;
+
+    @Autowired
+    private KeyGenService keyGenService;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cipher.key-pool.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cipher.key-pool.capacity:256}")
+    private int capacity;
+
+    @Value("${cipher.key-pool.min-size:8}")
+    private int minSize;
+
+    @Value("${cipher.key-pool.horizon:1s}")
+    private Duration horizon;
+
+    @Value("${cipher.format:v2}")
+    private CipherFormat format;
+
+    private ArrayBlockingQueue<PreparedKey> queue;
+    private Thread producer;
+    private volatile boolean producerParked;
+    private volatile boolean running;
+    private volatile int targetSize;
+    private double demandPerSecond;
+
+    private final LongAdder taken = new LongAdder();
+    private final LongAdder pooled = new LongAdder();
+    private final LongAdder inline = new LongAdder();
+
+    @PostConstruct
+    void initialize() {
+        capacity = Math.max(1, capacity);
+        minSize = Math.max(0, Math.min(minSize, capacity));
+        targetSize = minSize;
+
+        Gauge.builder("cipher.key-pool.size", this, KeySchedulePool::size)
+                .description("Prepared keys waiting in the pool")
+                .register(meterRegistry);
+        Gauge.builder("cipher.key-pool.target", this, pool -> pool.targetSize)
+                .description("Pool size the producer currently aims for")
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.key-pool.hits", pooled, LongAdder::sum)
+                .description("Keys served from the pool")
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.key-pool.inline", inline, LongAdder::sum)
+                .description("Keys generated on the request path because the pool was empty")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        producer = Thread.ofPlatform().name("key-pool-producer").daemon(true).start(this::produceLoop);
+    }
+
+    // The producer is stopped before the drain, so a key it was still preparing cannot be queued after it
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (producer != null) {
+            producer.interrupt();
+            producer.join();
+            PreparedKey prepared;
+            while ((prepared = queue.poll()) != null) {
+                prepared.close();
+            }
+        }
+    }
+
+    // The caller owns the returned key's schedule lease
+    public PreparedKey take() throws NoSuchAlgorithmException {
+        taken.increment();
+        PreparedKey prepared = enabled ? queue.poll() : null;
+        if (prepared != null) {
+            pooled.increment();
+            if (producerParked && queue.size() < targetSize) {
+                LockSupport.unpark(producer);
+            }
+            return prepared;
+        }
+        if (enabled) {
+            inline.increment();
+            LockSupport.unpark(producer);
+        }
+        return prepare();
+    }
+
+    public CipherFormat format() {
+        return format;
+    }
+
+    public int size() {
+        return enabled ? queue.size() : 0;
+    }
+
+    public long pooledCount() {
+        return pooled.sum();
+    }
+
+    public long inlineCount() {
+        return inline.sum();
+    }
+
+    private PreparedKey prepare() throws NoSuchAlgorithmException {
+        KeyMatrix key = keyGenService.generateKey();
+        return new PreparedKey(key, keyScheduleService.buildSchedule(key, format));
+    }
+
+    private void produceLoop() {
+        long windowStart = System.nanoTime();
+        long takesAtWindowStart = taken.sum();
+        while (running) {
+            long now = System.nanoTime();
+            if (now - windowStart >= ADAPT_INTERVAL_NANOS) {
+                long takes = taken.sum();
+                adapt((takes - takesAtWindowStart) * 1e9 / (now - windowStart));
+                windowStart = now;
+                takesAtWindowStart = takes;
+            }
+
+            if (queue.size() >= targetSize) {
+                producerParked = true;
+                LockSupport.parkNanos(this, ADAPT_INTERVAL_NANOS);
+                producerParked = false;
+                continue;
+            }
+            try {
+                PreparedKey prepared = prepare();
+                if (!queue.offer(prepared)) {
+                    prepared.close();
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Key pool producer failed, retrying", e);
+                LockSupport.parkNanos(this, ADAPT_INTERVAL_NANOS);
+            }
+        }
+    }
+
+    // Smoothed take rate over the last intervals, scaled to the horizon
+    private void adapt(double takesPerSecond) {
+        demandPerSecond = 0.7 * demandPerSecond + 0.3 * takesPerSecond;
+        long wanted = (long) Math.ceil(demandPerSecond * horizon.toNanos() / 1e9);
+        targetSize = (int) Math.max(minSize, Math.min(capacity, wanted));
+    }
+}
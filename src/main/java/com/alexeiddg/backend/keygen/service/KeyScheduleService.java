@@ -0,0 +1,67 @@
+package com.alexeiddg.backend.keygen.service;
+
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.service.TransformService;
+import com.alexeiddg.backend.encryption.service.TransposeService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.metrics.CipherMetrics;
+import com.alexeiddg.backend.metrics.CipherMetrics.Operation;
+import com.alexeiddg.backend.metrics.CipherMetrics.Stage;
+import com.alexeiddg.backend.util.HashService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.security.NoSuchAlgorithmException;
+
+import static com.alexeiddg.backend.encryption.service.SBoxService.generateInverseSBox;
+import static com.alexeiddg.backend.encryption.service.SBoxService.generateSBox;
+import static com.alexeiddg.backend.encryption.service.SBoxService.generateSBoxV2;
+
+@Service
+public class KeyScheduleService {
+
+    @Autowired
+    private HashService hashService;
+
+    @Autowired
+    private TransformService transformService;
+
+    @Autowired
+    private TransposeService transposeService;
+
+    @Autowired
+    private CipherMetrics cipherMetrics;
+
+    public KeySchedule buildSchedule(KeyMatrix key) throws NoSuchAlgorithmException {
+        return buildSchedule(key, CipherFormat.V1);
+    }
+
+    // Formats differ only in how the S-box is derived from the key
+    public KeySchedule buildSchedule(KeyMatrix key, CipherFormat format) throws NoSuchAlgorithmException {
+        byte[] keyBytes = key.flattenMatrix();
+        int rounds = Byte.toUnsignedInt(keyBytes[0]);
+        long mark = cipherMetrics.start();
+
+        byte[][] roundKeys = new byte[rounds + 1][];
+        int[][] shiftAmounts = new int[rounds][];
+        int[][] blockPermutations = new int[rounds][];
+
+        KeyMatrix roundKey = key;
+        for (int i = 0; i < rounds; i++) {
+            roundKeys[i] = roundKey.flattenMatrix();
+            shiftAmounts[i] = transformService.calculateShiftAmounts(roundKey);
+            blockPermutations[i] = transposeService.generateBlockPermutation(transposeService.generatePermutationFromKey(roundKey));
+            roundKey = hashService.applySha256ToMatrix(roundKey);
+        }
+        roundKeys[rounds] = roundKey.flattenMatrix();
+        mark = cipherMetrics.stop(Operation.SCHEDULE, Stage.KEY_EXPANSION, mark);
+
+        byte[] sBox = (format == CipherFormat.V2) ? generateSBoxV2(keyBytes) : generateSBox(keyBytes);
+        byte[] inverseSBox = generateInverseSBox(sBox);
+        cipherMetrics.stop(Operation.SCHEDULE, Stage.SBOX, mark);
+
+        return new KeySchedule(keyBytes, rounds, roundKeys, shiftAmounts, blockPermutations, sBox, inverseSBox);
+    }
+}
@@ -0,0 +1,99 @@
+package com.alexeiddg.backend.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Per-stage timers for the cipher pipeline. Callers thread a nanoTime mark through start/stop; with
+// cipher.metrics.enabled=false both return 0 without reading the clock, so the hooks cost a field read
+@Service
+public class CipherMetrics {
+
+    public enum Operation { ENCRYPT, DECRYPT, SCHEDULE }
+
+    public enum Stage { KEYGEN, KEY_EXPANSION, SBOX, COMPRESSION, PADDING, ROUNDS, CBC, ENCODE, DECODE }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cipher.metrics.enabled:true}")
+    private boolean enabled;
+
+    // Registered on first use so only the stage/operation pairs that actually occur are exported
+    private final Timer[][] timers = new Timer[Operation.values().length][Stage.values().length];
+    private final DistributionSummary[] payloadBlocks = new DistributionSummary[2];
+    private final DistributionSummary[] rounds = new DistributionSummary[2];
+
+    @PostConstruct
+    void initialize() {
+        if (!enabled) {
+            return;
+        }
+        double[] roundBuckets = IntStream.rangeClosed(1, 24).asDoubleStream().toArray();
+        for (Operation operation : new Operation[]{Operation.ENCRYPT, Operation.DECRYPT}) {
+            payloadBlocks[operation.ordinal()] = DistributionSummary.builder("cipher.payload.blocks")
+                    .description("16-byte blocks per message")
+                    .baseUnit("blocks")
+                    .tag("operation", tag(operation))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            rounds[operation.ordinal()] = DistributionSummary.builder("cipher.rounds")
+                    .description("Round count of the key used per message")
+                    .tag("operation", tag(operation))
+                    .serviceLevelObjectives(roundBuckets)
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    // Records the time since start and returns the new mark, so consecutive stages can be chained
+    public long stop(Operation operation, Stage stage, long start) {
+        if (!enabled) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        timer(operation, stage).record(now - start, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void message(Operation operation, int roundCount, int blocks) {
+        if (!enabled) {
+            return;
+        }
+        rounds[operation.ordinal()].record(roundCount);
+        payloadBlocks[operation.ordinal()].record(blocks);
+    }
+
+    private Timer timer(Operation operation, Stage stage) {
+        Timer timer = timers[operation.ordinal()][stage.ordinal()];
+        if (timer == null) {
+            timer = Timer.builder("cipher.stage")
+                    .description("Time spent per cipher pipeline stage")
+                    .tag("operation", tag(operation))
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT).replace('_', '-'))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            timers[operation.ordinal()][stage.ordinal()] = timer;
+        }
+        return timer;
+    }
+
+    private static String tag(Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,32 @@
+package com.alexeiddg.backend.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Writes batch results as one JSON array in request order, flushing each item as soon as it and all before it are done
+@Service
+public class BatchResponseWriter {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public <T> StreamingResponseBody inOrder(List<CompletableFuture<T>> results) {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                for (CompletableFuture<T> result : results) {
+                    generator.writeObject(result.join());
+                    generator.flush();
+                }
+                generator.writeEndArray();
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.alexeiddg.backend.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+// Shared by the encryption and decryption services for work handed to the batching engine
+public final class CipherFutures {
+
+    private CipherFutures() {
+    }
+
+    // CompletableFuture.supplyAsync, except that a task the executor rejects fails its own future
+    // instead of throwing, so one batch item over the queue limit does not abort the whole batch
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> task, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Cipher capacity exhausted", e));
+        }
+    }
+
+    // Rounds that ran inline are finished on this thread; batched ones complete on an engine worker,
+    // so the finishing step (encoding, or unpadding and inflating) moves back to the given executor
+    public static <T> CompletableFuture<T> afterRounds(CompletableFuture<Void> rounds, Supplier<T> finish, Executor executor) {
+        return rounds.isDone()
+                ? rounds.thenApply(done -> finish.get())
+                : rounds.thenApplyAsync(done -> finish.get(), executor);
+    }
+
+    // The exception a batch item reports: the cause of a CompletionException, wrapped if it is not an Exception
+    public static Exception unwrap(Throwable e) {
+        Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+        return (cause instanceof Exception exception) ? exception : new CompletionException(cause);
+    }
+}
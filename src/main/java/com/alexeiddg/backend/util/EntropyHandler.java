@@ -1,16 +1,22 @@
 package com.alexeiddg.backend.util;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
-
 @Service
 public class EntropyHandler {
 
+    @Autowired
+    private EntropyPool entropyPool;
+
     public byte[] getEntropy() {
-        SecureRandom secureRandom = new SecureRandom();
-        byte[] entropy = new byte[16];
-        secureRandom.nextBytes(entropy);
+        return getEntropy(16);
+    }
+
+    // Whole 16-byte slices come from the pre-filled pool, so a batch of keys costs no generator calls on this thread
+    public byte[] getEntropy(int length) {
+        byte[] entropy = new byte[length];
+        entropyPool.nextBytes(entropy);
         return entropy;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+package com.alexeiddg.backend.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Ring of pre-generated 16-byte slices, bulk-filled by one background thread and drained lock-free
+// (bounded MPMC ring with per-slot sequence numbers, single producer). When the ring is empty callers
+// fall back to a striped set of DRBG generators picked by thread id, so no SecureRandom is shared by all threads
+@Slf4j
+@Service
+public class EntropyPool {
+
+    private static final int SLICE = 16;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cipher.entropy.pool.enabled:true}")
+    private boolean enabled;
+
+    // Slices held by the ring, rounded up to a power of two
+    @Value("${cipher.entropy.pool.capacity:4096}")
+    private int requestedCapacity;
+
+    // Slices generated per nextBytes call on the fill thread
+    @Value("${cipher.entropy.pool.refill-batch:256}")
+    private int refillBatch;
+
+    private int capacity;
+    private int mask;
+    private byte[] slices;
+    private AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private volatile long tail;
+
+    private SecureRandom[] stripes;
+    private Thread filler;
+    private volatile boolean fillerParked;
+    private volatile boolean running;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder empty = new LongAdder();
+
+    @PostConstruct
+    void initialize() {
+        int stripeCount = powerOfTwoAtLeast(Runtime.getRuntime().availableProcessors() * 2);
+        stripes = new SecureRandom[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = newGenerator();
+        }
+
+        capacity = powerOfTwoAtLeast(requestedCapacity);
+        mask = capacity - 1;
+        refillBatch = Math.max(1, Math.min(refillBatch, capacity / 2));
+
+        Gauge.builder("cipher.entropy.pool.fill", this, EntropyPool::size)
+                .description("Pre-generated 16-byte slices waiting in the entropy pool")
+                .register(meterRegistry);
+        Gauge.builder("cipher.entropy.pool.capacity", this, pool -> pool.enabled ? pool.capacity : 0)
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.entropy.pool.served", served, LongAdder::sum)
+                .description("Slices handed out from the pool")
+                .register(meterRegistry);
+        FunctionCounter.builder("cipher.entropy.pool.empty", empty, LongAdder::sum)
+                .description("Slices requested while the pool was empty, served by a striped generator instead")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+        slices = new byte[capacity * SLICE];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        running = true;
+        filler = Thread.ofPlatform().name("entropy-filler").daemon(true).start(this::fillLoop);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (filler != null) {
+            LockSupport.unpark(filler);
+        }
+    }
+
+    // Fills dest one 16-byte slice at a time from the pool; a trailing partial slice comes from a stripe
+    public void nextBytes(byte[] dest) {
+        int offset = 0;
+        if (enabled) {
+            while (dest.length - offset >= SLICE) {
+                if (!take(dest, offset)) {
+                    empty.add((dest.length - offset) / SLICE);
+                    break;
+                }
+                offset += SLICE;
+            }
+            if (fillerParked && size() <= capacity / 2) {
+                LockSupport.unpark(filler);
+            }
+        }
+        if (offset < dest.length) {
+            byte[] rest = new byte[dest.length - offset];
+            stripe().nextBytes(rest);
+            System.arraycopy(rest, 0, dest, offset, rest.length);
+            Arrays.fill(rest, (byte) 0);
+        }
+    }
+
+    public int nextInt(int bound) {
+        return stripe().nextInt(bound);
+    }
+
+    public int size() {
+        return enabled ? (int) Math.max(0, tail - head.get()) : 0;
+    }
+
+    public long servedCount() {
+        return served.sum();
+    }
+
+    public long emptyCount() {
+        return empty.sum();
+    }
+
+    private boolean take(byte[] dest, int offset) {
+        while (true) {
+            long position = head.get();
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference < 0) {
+                return false;
+            }
+            if (difference == 0 && head.compareAndSet(position, position + 1)) {
+                System.arraycopy(slices, slot * SLICE, dest, offset, SLICE);
+                Arrays.fill(slices, slot * SLICE, slot * SLICE + SLICE, (byte) 0);
+                sequences.set(slot, position + capacity);
+                served.increment();
+                return true;
+            }
+        }
+    }
+
+    private void fillLoop() {
+        SecureRandom generator = newGenerator();
+        byte[] batch = new byte[refillBatch * SLICE];
+        while (running) {
+            if (capacity - size() < refillBatch) {
+                fillerParked = true;
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                fillerParked = false;
+                continue;
+            }
+            generator.nextBytes(batch);
+            long position = tail;
+            for (int i = 0; i < refillBatch; i++, position++) {
+                int slot = (int) (position & mask);
+                // Only this thread produces, so a free-looking ring can only lag behind a consumer still copying out
+                while (sequences.get(slot) != position) {
+                    Thread.onSpinWait();
+                }
+                System.arraycopy(batch, i * SLICE, slices, slot * SLICE, SLICE);
+                sequences.set(slot, position + 1);
+                tail = position + 1;
+            }
+            Arrays.fill(batch, (byte) 0);
+        }
+    }
+
+    private SecureRandom stripe() {
+        return stripes[(int) Thread.currentThread().threadId() & (stripes.length - 1)];
+    }
+
+    private static int powerOfTwoAtLeast(int value) {
+        return Integer.highestOneBit(Math.max(2, value) - 1) << 1;
+    }
+
+    // DRBG instances lock per instance, unlike the default NativePRNG which shares one lock per JVM
+    private static SecureRandom newGenerator() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            log.warn("DRBG unavailable, using default SecureRandom: {}", e.toString());
+            return new SecureRandom();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.alexeiddg.backend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+// Moves bytes between servlet streams and off-heap segments through the channel adapters, which
+// copy a few KB at a time, so a segment of any size never has a heap twin
+public final class SegmentStreams {
+
+    private SegmentStreams() {
+    }
+
+    // Fills the segment or stops at end of stream; returns the bytes read
+    public static long readFully(InputStream in, MemorySegment segment) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(in);
+        ByteBuffer buffer = segment.asByteBuffer();
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading
+        }
+        return buffer.position();
+    }
+
+    // The channel is not closed, that would close the response stream
+    public static void write(MemorySegment segment, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        ByteBuffer buffer = segment.asByteBuffer();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
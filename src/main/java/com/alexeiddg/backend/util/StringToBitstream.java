@@ -3,6 +3,8 @@ package com.alexeiddg.backend.util;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.util.Arrays;
 
 @Service
@@ -35,6 +37,44 @@ public class StringToBitstream {
         return matrixChunks;
     }
 
+    // Apply ISO/IEC 7816-4 padding into one contiguous array of 16-byte blocks
+    public static byte[] generateBlockPadding(byte[] byteArray) {
+        return generateBlockPadding(byteArray, 0);
+    }
+
+    // Same, with the blocks starting after offset leading bytes (room for a format header)
+    public static byte[] generateBlockPadding(byte[] byteArray, int offset) {
+        int chunkSize = 16;
+        int paddingLength = chunkSize - (byteArray.length % chunkSize);
+        byte[] paddedByteArray = new byte[offset + byteArray.length + paddingLength];
+        System.arraycopy(byteArray, 0, paddedByteArray, offset, byteArray.length);
+        paddedByteArray[offset + byteArray.length] = (byte) 0x80;
+        return paddedByteArray;
+    }
+
+    // Pads buffer[0, length) in place to the next block boundary, the buffer needs up to 16 spare bytes
+    public static int applyBlockPadding(byte[] buffer, int length) {
+        return applyBlockPadding(buffer, 0, length);
+    }
+
+    // Same for data starting at offset; returns the padded length, not counting offset
+    public static int applyBlockPadding(byte[] buffer, int offset, int length) {
+        int paddedLength = (length / 16 + 1) * 16;
+        buffer[offset + length] = (byte) 0x80;
+        Arrays.fill(buffer, offset + length + 1, offset + paddedLength, (byte) 0);
+        return paddedLength;
+    }
+
+    // Zero-fills a trailing partial block; aligned input is returned as-is
+    public static byte[] byteArrayToBlocks(byte[] byteArray) {
+        int chunkSize = 16;
+        if (byteArray.length % chunkSize == 0) {
+            return byteArray;
+        }
+        int totalChunks = (byteArray.length + chunkSize - 1) / chunkSize;
+        return Arrays.copyOf(byteArray, totalChunks * chunkSize);
+    }
+
     public static byte[][][] byteArrayToMatrixChunks(byte[] byteArray) {
         int chunkSize = 16;
         int totalLength = byteArray.length;
@@ -70,18 +110,40 @@ public class StringToBitstream {
             }
         }
 
-        byte[] fullByteArray = outputStream.toByteArray();
+        return blocksToByteArray(outputStream.toByteArray());
+    }
+
+    public static byte[] blocksToByteArray(byte[] fullByteArray) {
+        return Arrays.copyOfRange(fullByteArray, 0, unpaddedLength(fullByteArray, 0, fullByteArray.length));
+    }
 
-        // Remove ISO/IEC 7816-4 padding
-        int i = fullByteArray.length - 1;
-        while (i >= 0 && fullByteArray[i] == 0x00) {
+    // Remove ISO/IEC 7816-4 padding: length of [offset, offset + length) without it
+    public static int unpaddedLength(byte[] blocks, int offset, int length) {
+        int i = offset + length - 1;
+        while (i >= offset && blocks[i] == 0x00) {
             i--;
         }
-        if (i >= 0 && fullByteArray[i] == (byte) 0x80) {
-            return Arrays.copyOfRange(fullByteArray, 0, i);
+        if (i >= offset && blocks[i] == (byte) 0x80) {
+            return i - offset;
         } else {
             throw new IllegalArgumentException("Invalid padding");
         }
     }
 
+    // Off-heap versions; the segment needs up to 16 spare bytes after length
+    public static long applyBlockPadding(MemorySegment segment, long length) {
+        long paddedLength = (length / 16 + 1) * 16;
+        segment.set(ValueLayout.JAVA_BYTE, length, (byte) 0x80);
+        segment.asSlice(length + 1, paddedLength - length - 1).fill((byte) 0);
+        return paddedLength;
+    }
+
+    // Only the final block is copied out, as with the streaming and file paths
+    public static long unpaddedLength(MemorySegment blocks, long length) {
+        byte[] last = blocks.asSlice(length - 16, 16).toArray(ValueLayout.JAVA_BYTE);
+        int tail = unpaddedLength(last, 0, 16);
+        Arrays.fill(last, (byte) 0);
+        return length - 16 + tail;
+    }
+
 }
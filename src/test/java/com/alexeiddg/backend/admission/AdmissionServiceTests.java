@@ -0,0 +1,143 @@
+package com.alexeiddg.backend.admission;
+
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Budgets small enough that a handful of tickets saturate both lanes
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "cipher.admission.small-threshold=100",
+        "cipher.admission.small-budget=1000",
+        "cipher.admission.large-budget=10000",
+        "cipher.admission.max-wait=10ms"
+})
+class AdmissionServiceTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AdmissionService admissionService;
+
+    @Test
+    void smallRequestsAreAdmittedWhileTheLargeLaneIsFull() throws Exception {
+        AdmissionService.Ticket large = admissionService.tryAdmit(10000);
+        assertNotNull(large);
+        try {
+            assertNull(admissionService.tryAdmit(200));
+            AdmissionService.Ticket small = admissionService.tryAdmit(100);
+            assertNotNull(small);
+            assertEquals("small", small.lane());
+            small.release();
+        } finally {
+            large.release();
+        }
+
+        AdmissionService.Ticket next = admissionService.tryAdmit(200);
+        assertNotNull(next);
+        next.release();
+        // Releasing twice must not hand back budget that is no longer held
+        next.release();
+    }
+
+    @Test
+    void smallRequestsBorrowFromAnIdleLargeLane() throws Exception {
+        List<AdmissionService.Ticket> small = fillSmallLane();
+        try {
+            AdmissionService.Ticket borrowed = admissionService.tryAdmit(100);
+            assertNotNull(borrowed);
+            assertEquals("large", borrowed.lane());
+            borrowed.release();
+        } finally {
+            small.forEach(AdmissionService.Ticket::release);
+        }
+    }
+
+    @Test
+    void oversizeRequestsRunAlone() throws Exception {
+        AdmissionService.Ticket oversize = admissionService.tryAdmit(50000);
+        assertNotNull(oversize);
+        try {
+            assertNull(admissionService.tryAdmit(200));
+        } finally {
+            oversize.release();
+        }
+    }
+
+    @Test
+    void saturatedEndpointsShedWithRetryAfter() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/encrypt/stream"))
+                .POST(HttpRequest.BodyPublishers.ofString("hello"))
+                .build();
+
+        AdmissionService.Ticket large = admissionService.tryAdmit(10000);
+        List<AdmissionService.Ticket> small = fillSmallLane();
+        try {
+            HttpResponse<byte[]> shed = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(503, shed.statusCode());
+            assertTrue(Long.parseLong(shed.headers().firstValue("Retry-After").orElseThrow()) >= 1);
+        } finally {
+            small.forEach(AdmissionService.Ticket::release);
+            large.release();
+        }
+
+        HttpResponse<byte[]> admitted = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, admitted.statusCode());
+        assertEquals(16, admitted.body().length);
+    }
+
+    @Test
+    void decryptRequestsAreChargedTheirKeysRounds() throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        // 480 bytes of blocks: 32 blocks with the header, so 768 at 24 rounds and 8160 at 255
+        byte[] highRounds = frame(255);
+        byte[] lowRounds = frame(24);
+        String highKey = "ff" + "00".repeat(15);
+
+        AdmissionService.Ticket large = admissionService.tryAdmit(2000);
+        try {
+            assertEquals(503, client.send(post("/api/decrypt/binary", highRounds, null), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(503, client.send(post("/api/decrypt/stream", highRounds, highKey), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertNotEquals(503, client.send(post("/api/decrypt/binary", lowRounds, null), HttpResponse.BodyHandlers.discarding()).statusCode());
+        } finally {
+            large.release();
+        }
+    }
+
+    private HttpRequest post(String path, byte[] body, String key) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/octet-stream")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        return (key != null) ? builder.header("X-Encryption-Key", key).build() : builder.build();
+    }
+
+    private static byte[] frame(int rounds) {
+        byte[] key = new byte[16];
+        key[0] = (byte) rounds;
+        byte[] frame = new byte[BinaryFrame.HEADER_LENGTH + 480];
+        BinaryFrame.writeHeader(frame, CipherFormat.V2, 0, key, 480);
+        return frame;
+    }
+
+    private List<AdmissionService.Ticket> fillSmallLane() throws InterruptedException {
+        List<AdmissionService.Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tickets.add(admissionService.tryAdmit(100));
+        }
+        tickets.forEach(ticket -> assertEquals("small", ticket.lane()));
+        return tickets;
+    }
+}
@@ -0,0 +1,91 @@
+package com.alexeiddg.backend.batch.runner;
+
+import com.alexeiddg.backend.batch.model.BatchManifest;
+import com.alexeiddg.backend.batch.model.BatchManifestEntry;
+import com.alexeiddg.backend.batch.service.FileCipherService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// The runner only exists when cipher.batch.mode is set, so each run wires one by hand
+@SpringBootTest(properties = {
+        "cipher.batch.window-size=64",
+        "cipher.batch.chunk-size=32"
+})
+class BatchCipherRunnerTests {
+
+    @Autowired
+    private FileCipherService fileCipherService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void directoryRoundTripsThroughTheManifest(@TempDir Path directory) throws Exception {
+        Path plainRoot = Files.createDirectories(directory.resolve("plain/nested"));
+        byte[] empty = new byte[0];
+        byte[] small = new byte[100];
+        byte[] large = new byte[1000];
+        new Random(7).nextBytes(small);
+        new Random(8).nextBytes(large);
+        Files.write(directory.resolve("plain/empty"), empty);
+        Files.write(directory.resolve("plain/small"), small);
+        Files.write(plainRoot.resolve("large"), large);
+
+        Path encrypted = directory.resolve("encrypted");
+        runner("encrypt", directory.resolve("plain"), encrypted, "").run(null);
+        BatchManifest manifest = objectMapper.readValue(encrypted.resolve("manifest.json").toFile(), BatchManifest.class);
+        assertEquals(3, manifest.getFiles().size());
+        for (BatchManifestEntry entry : manifest.getFiles()) {
+            assertEquals("OK", entry.getStatus());
+            assertEquals(Files.size(encrypted.resolve(entry.getTarget())), entry.getOutputBytes());
+        }
+
+        Path decrypted = directory.resolve("decrypted");
+        runner("decrypt", encrypted, decrypted, encrypted.resolve("manifest.json").toString()).run(null);
+        assertArrayEquals(empty, Files.readAllBytes(decrypted.resolve("empty")));
+        assertArrayEquals(small, Files.readAllBytes(decrypted.resolve("small")));
+        assertArrayEquals(large, Files.readAllBytes(decrypted.resolve("nested/large")));
+    }
+
+    // A failed file is recorded in the manifest and fails the run
+    @Test
+    void decryptWithoutAKeyFailsTheRun(@TempDir Path directory) throws Exception {
+        Path encrypted = directory.resolve("encrypted");
+        Files.write(directory.resolve("plain"), new byte[100]);
+        runner("encrypt", directory.resolve("plain"), encrypted, "").run(null);
+        Files.write(encrypted.resolve("stray.enc"), new byte[32]);
+
+        Path decrypted = directory.resolve("decrypted");
+        assertThrows(IllegalStateException.class, () ->
+                runner("decrypt", encrypted, decrypted, encrypted.resolve("manifest.json").toString()).run(null));
+        BatchManifest manifest = objectMapper.readValue(decrypted.resolve("manifest.json").toFile(), BatchManifest.class);
+        assertEquals(2, manifest.getFiles().size());
+        assertEquals("FAILED", manifest.getFiles().stream()
+                .filter(entry -> entry.getSource().equals("stray.enc")).findFirst().orElseThrow().getStatus());
+    }
+
+    private BatchCipherRunner runner(String mode, Path input, Path output, String keys) {
+        BatchCipherRunner runner = new BatchCipherRunner();
+        ReflectionTestUtils.setField(runner, "fileCipherService", fileCipherService);
+        ReflectionTestUtils.setField(runner, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(runner, "mode", mode);
+        ReflectionTestUtils.setField(runner, "input", input);
+        ReflectionTestUtils.setField(runner, "output", output);
+        ReflectionTestUtils.setField(runner, "manifest", "");
+        ReflectionTestUtils.setField(runner, "keys", keys);
+        ReflectionTestUtils.setField(runner, "parallelism", 2);
+        return runner;
+    }
+}
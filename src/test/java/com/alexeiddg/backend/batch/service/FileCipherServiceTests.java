@@ -0,0 +1,120 @@
+package com.alexeiddg.backend.batch.service;
+
+import com.alexeiddg.backend.batch.model.BatchManifestEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// A 64-byte window and 32-byte chunk so every size below crosses chunk and window boundaries
+@SpringBootTest(properties = {
+        "cipher.batch.window-size=64",
+        "cipher.batch.chunk-size=32"
+})
+class FileCipherServiceTests {
+
+    private static final int[] SIZES = {0, 1, 15, 16, 31, 32, 33, 63, 64, 65, 100, 128, 1000};
+
+    @Autowired
+    private FileCipherService fileCipherService;
+
+    @Test
+    void heapFilesRoundTripAcrossChunksAndWindows(@TempDir Path directory) throws Exception {
+        withOffHeap(false, () -> roundTrip(directory, false));
+    }
+
+    @Test
+    void mappedFilesRoundTripAcrossChunksAndWindows(@TempDir Path directory) throws Exception {
+        withOffHeap(true, () -> roundTrip(directory, true));
+    }
+
+    // Both modes write the same ciphertext format, so a file encrypted in one decrypts in the other
+    @Test
+    void heapAndMappedModesAreInterchangeable(@TempDir Path directory) throws Exception {
+        byte[] plain = new byte[1000];
+        new Random(7).nextBytes(plain);
+        Path source = Files.write(directory.resolve("plain"), plain);
+        Path encrypted = directory.resolve("plain.enc");
+        Path decrypted = directory.resolve("plain.dec");
+
+        BatchManifestEntry[] entry = new BatchManifestEntry[1];
+        withOffHeap(false, () -> entry[0] = fileCipherService.encryptFile(source, encrypted, "plain", "plain.enc"));
+        withOffHeap(true, () -> fileCipherService.decryptFile(encrypted, decrypted, "plain.enc", "plain", entry[0].getClientKey()));
+        assertArrayEquals(plain, Files.readAllBytes(decrypted));
+    }
+
+    @Test
+    void truncatedCiphertextIsRejected(@TempDir Path directory) throws Exception {
+        Path source = Files.write(directory.resolve("plain"), new byte[100]);
+        Path encrypted = directory.resolve("plain.enc");
+        BatchManifestEntry entry = fileCipherService.encryptFile(source, encrypted, "plain", "plain.enc");
+        byte[] ciphertext = Files.readAllBytes(encrypted);
+        Files.write(encrypted, Arrays.copyOf(ciphertext, ciphertext.length - 1));
+
+        for (boolean offHeap : new boolean[]{false, true}) {
+            withOffHeap(offHeap, () -> assertThrows(IllegalArgumentException.class, () -> fileCipherService.decryptFile(
+                    encrypted, directory.resolve("plain.dec"), "plain.enc", "plain", entry.getClientKey())));
+        }
+    }
+
+    @Test
+    void windowAndChunkSizesOffBlockBoundariesAreRejected() {
+        for (long windowSize : new long[]{0, -16, 100}) {
+            FileCipherService service = new FileCipherService();
+            ReflectionTestUtils.setField(service, "windowSize", windowSize);
+            ReflectionTestUtils.setField(service, "chunkSize", 32);
+            assertThrows(IllegalArgumentException.class, service::validate);
+        }
+        for (int chunkSize : new int[]{0, -16, 24}) {
+            FileCipherService service = new FileCipherService();
+            ReflectionTestUtils.setField(service, "windowSize", 64L);
+            ReflectionTestUtils.setField(service, "chunkSize", chunkSize);
+            assertThrows(IllegalArgumentException.class, service::validate);
+        }
+    }
+
+    private void roundTrip(Path directory, boolean offHeap) throws Exception {
+        for (int size : SIZES) {
+            byte[] plain = new byte[size];
+            new Random(size).nextBytes(plain);
+            Path source = Files.write(directory.resolve("plain-" + size), plain);
+            Path encrypted = directory.resolve("plain-" + size + ".enc");
+            Path decrypted = directory.resolve("plain-" + size + ".dec");
+
+            BatchManifestEntry entry = fileCipherService.encryptFile(source, encrypted, "plain", "plain.enc");
+            assertEquals((size / 16 + 1) * 16, Files.size(encrypted), "size " + size + ", off-heap " + offHeap);
+            assertEquals(size, entry.getInputBytes());
+            assertEquals(Files.size(encrypted), entry.getOutputBytes());
+
+            BatchManifestEntry decryptEntry = fileCipherService.decryptFile(encrypted, decrypted, "plain.enc", "plain",
+                    entry.getClientKey());
+            assertArrayEquals(plain, Files.readAllBytes(decrypted), "size " + size + ", off-heap " + offHeap);
+            assertEquals(size, decryptEntry.getOutputBytes());
+        }
+    }
+
+    // The service is a shared singleton, so the mode is restored for the other tests in the context
+    private void withOffHeap(boolean offHeap, FileAction action) throws Exception {
+        Object previous = ReflectionTestUtils.getField(fileCipherService, "offHeapEnabled");
+        ReflectionTestUtils.setField(fileCipherService, "offHeapEnabled", offHeap);
+        try {
+            action.run();
+        } finally {
+            ReflectionTestUtils.setField(fileCipherService, "offHeapEnabled", previous);
+        }
+    }
+
+    private interface FileAction {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,94 @@
+package com.alexeiddg.backend.channel;
+
+import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CipherChannelHandlerTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    private final BlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+
+    @Test
+    void encryptsAndDecryptsFramedMessages() throws Exception {
+        WebSocketSession session = new StandardWebSocketClient().execute(new BinaryWebSocketHandler() {
+            @Override
+            protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) {
+                ByteBuffer payload = message.getPayload();
+                byte[] reply = new byte[payload.remaining()];
+                payload.get(reply);
+                replies.add(reply);
+            }
+        }, "ws://localhost:" + port + "/ws/cipher").get(10, TimeUnit.SECONDS);
+
+        try {
+            String message = "channel message ".repeat(300) + "tail";
+            byte[] plain = message.getBytes(StandardCharsets.UTF_8);
+
+            byte[] key = Arrays.copyOfRange(exchange(session, CipherChannelHandler.ENCRYPT, new byte[0]), 1, 17);
+            byte[] cipherText = transfer(session, plain);
+
+            // Same key and chain as a one-shot message, so the REST decrypt path agrees
+            assertEquals(message, decryptionService.decrypt(KeyMatrix.rebuildMatrix(key).flattenToHex(),
+                    Base64.getUrlEncoder().encodeToString(cipherText)));
+
+            // A second message on the same session restarts the chain
+            assertArrayEquals(cipherText, transfer(session, plain));
+
+            assertEquals(CipherChannelHandler.DECRYPT, exchange(session, CipherChannelHandler.DECRYPT, key)[0]);
+            assertArrayEquals(plain, transfer(session, cipherText));
+
+            byte[] error = exchange(session, CipherChannelHandler.FINISH, new byte[0]);
+            assertEquals(CipherChannelHandler.ERROR, error[0]);
+        } finally {
+            session.close();
+        }
+    }
+
+    // Sends the payload in uneven frames followed by a finish frame and collects the processed bytes
+    private byte[] transfer(WebSocketSession session, byte[] payload) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (int offset = 0, frame = 1; offset < payload.length; offset += frame, frame = frame * 3 + 1) {
+            byte[] chunk = Arrays.copyOfRange(payload, offset, Math.min(payload.length, offset + frame));
+            byte[] reply = exchange(session, CipherChannelHandler.DATA, chunk);
+            assertEquals(CipherChannelHandler.DATA, reply[0]);
+            output.write(reply, 1, reply.length - 1);
+        }
+        byte[] reply = exchange(session, CipherChannelHandler.FINISH, new byte[0]);
+        assertEquals(CipherChannelHandler.FINISH, reply[0]);
+        output.write(reply, 1, reply.length - 1);
+        return output.toByteArray();
+    }
+
+    private byte[] exchange(WebSocketSession session, byte opcode, byte[] body) throws Exception {
+        ByteBuffer frame = ByteBuffer.allocate(1 + body.length);
+        frame.put(opcode).put(body).flip();
+        session.sendMessage(new BinaryMessage(frame));
+        return replies.poll(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,251 @@
+package com.alexeiddg.backend.decryption.controller;
+
+import com.alexeiddg.backend.decryption.service.RangeDecryptionService;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DecryptionControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private RangeDecryptionService rangeDecryptionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cipher.batch-api.max-items}")
+    private int maxBatchItems;
+
+    @Test
+    void decryptReleasesTheRequestThread() throws Exception {
+        EncryptionResponse encrypted = encryptionService.encrypt("hello async");
+
+        MvcResult result = mockMvc.perform(post("/api/decrypt")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("clientKey", encrypted.getEncryptionKey(), "cipherText", encrypted.getCipherText()))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("hello async"));
+    }
+
+    // A failure on the compute pool reaches the async result rather than being lost with the thread
+    @Test
+    void decryptErrorsPropagateThroughTheFuture() throws Exception {
+        EncryptionResponse encrypted = encryptionService.encrypt("hello");
+
+        MvcResult result = mockMvc.perform(post("/api/decrypt")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(Map.of("clientKey", encrypted.getEncryptionKey(), "cipherText", "AAAA"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertInstanceOf(IllegalArgumentException.class, result.getAsyncResult());
+    }
+
+    @Test
+    void batchResultsComeBackInRequestOrder() throws Exception {
+        EncryptionResponse first = encryptionService.encrypt("first");
+        EncryptionResponse second = encryptionService.encrypt("second");
+
+        MvcResult result = mockMvc.perform(post("/api/decrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(List.of(item(first), item(second)))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].status").value("OK"))
+                .andExpect(jsonPath("$[0].text").value("first"))
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].status").value("OK"))
+                .andExpect(jsonPath("$[1].text").value("second"));
+    }
+
+    // Bad Base64 and a wrong key each fail their own entry; the good item between them still decrypts
+    @Test
+    void failedItemsOnlyFailTheirOwnEntries() throws Exception {
+        EncryptionResponse good = encryptionService.encrypt("good");
+        EncryptionResponse other = encryptionService.encrypt("other");
+
+        MvcResult result = mockMvc.perform(post("/api/decrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json(List.of(
+                                Map.of("clientKey", good.getEncryptionKey(), "cipherText", "not base64!"),
+                                item(good),
+                                Map.of("clientKey", "zz", "cipherText", other.getCipherText())))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[0].status").value("ERROR"))
+                .andExpect(jsonPath("$[0].error").exists())
+                .andExpect(jsonPath("$[0].text").doesNotExist())
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].status").value("OK"))
+                .andExpect(jsonPath("$[1].text").value("good"))
+                .andExpect(jsonPath("$[2].index").value(2))
+                .andExpect(jsonPath("$[2].status").value("ERROR"))
+                .andExpect(jsonPath("$[2].error").exists());
+    }
+
+    @Test
+    void emptyBatchIsAnEmptyArray() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/decrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void overLimitBatchIsRejectedWith413() throws Exception {
+        String items = String.join(",", Collections.nCopies(maxBatchItems + 1, "{\"clientKey\": \"00\", \"cipherText\": \"\"}"));
+        mockMvc.perform(post("/api/decrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + items + "]"))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    void storedFileAndFrameRangesAreServedByPath(@TempDir Path directory) throws Exception {
+        byte[] plain = new byte[1000];
+        new Random(20).nextBytes(plain);
+        KeyMatrix key = encryptionService.getEncryptionKey();
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        encryptionService.encryptStream(new ByteArrayInputStream(plain), cipher, key);
+        Files.write(Files.createDirectories(directory.resolve("nested")).resolve("blob.enc"), cipher.toByteArray());
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        encryptionService.encryptFrame(new ByteArrayInputStream(plain), plain.length, frame);
+        Files.write(directory.resolve("blob.frame"), frame.toByteArray());
+
+        withStorageRoot(directory, () -> {
+            mockMvc.perform(get("/api/decrypt/range/file")
+                            .header("X-Encryption-Key", key.flattenToHex())
+                            .param("path", "nested/blob.enc").param("offset", "777").param("length", "100"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 777-876/1000"))
+                    .andExpect(content().bytes(Arrays.copyOfRange(plain, 777, 877)));
+
+            mockMvc.perform(get("/api/decrypt/range/frame")
+                            .param("path", "blob.frame").param("offset", "990").param("length", "100"))
+                    .andExpect(status().isPartialContent())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 990-999/1000"))
+                    .andExpect(content().bytes(Arrays.copyOfRange(plain, 990, 1000)));
+
+            mockMvc.perform(get("/api/decrypt/range/frame")
+                            .param("path", "blob.frame").param("offset", "1000").param("length", "10"))
+                    .andExpect(status().isRequestedRangeNotSatisfiable())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */1000"));
+        });
+    }
+
+    // Paths that leave the storage root are reported as missing, as is everything when no root is set
+    @Test
+    void pathsOutsideTheStorageRootAreNotFound(@TempDir Path directory) throws Exception {
+        Path root = Files.createDirectories(directory.resolve("root"));
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        encryptionService.encryptFrame(new ByteArrayInputStream(new byte[100]), 100, frame);
+        Files.write(directory.resolve("outside.frame"), frame.toByteArray());
+        Files.write(root.resolve("inside.frame"), frame.toByteArray());
+
+        withStorageRoot(root, () -> {
+            for (String path : new String[]{"../outside.frame", directory.resolve("outside.frame").toString(), "missing.frame", "."}) {
+                mockMvc.perform(get("/api/decrypt/range/frame")
+                                .param("path", path).param("offset", "0").param("length", "10"))
+                        .andExpect(status().isNotFound());
+            }
+        });
+        mockMvc.perform(get("/api/decrypt/range/frame")
+                        .param("path", "inside.frame").param("offset", "0").param("length", "10"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void emptyRangeIsNotSatisfiable() throws Exception {
+        EncryptionResponse encrypted = encryptionService.encrypt("hello range");
+        for (long[] range : new long[][]{{0, 0}, {11, 5}}) {
+            mockMvc.perform(post("/api/decrypt/range")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(json(Map.of("clientKey", encrypted.getEncryptionKey(), "cipherText", encrypted.getCipherText(),
+                                    "offset", range[0], "length", range[1]))))
+                    .andExpect(status().isRequestedRangeNotSatisfiable())
+                    .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */11"));
+        }
+    }
+
+    // The service is a shared singleton, so the root is cleared again for the other tests in the context
+    private void withStorageRoot(Path root, RangeRequests requests) throws Exception {
+        ReflectionTestUtils.setField(rangeDecryptionService, "storageRoot", root.toString());
+        try {
+            requests.run();
+        } finally {
+            ReflectionTestUtils.setField(rangeDecryptionService, "storageRoot", "");
+        }
+    }
+
+    private interface RangeRequests {
+        void run() throws Exception;
+    }
+
+    private Map<String, String> item(EncryptionResponse encrypted) {
+        return Map.of("clientKey", encrypted.getEncryptionKey(), "cipherText", encrypted.getCipherText());
+    }
+
+    private String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+}
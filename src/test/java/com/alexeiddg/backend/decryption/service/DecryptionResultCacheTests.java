@@ -0,0 +1,128 @@
+package com.alexeiddg.backend.decryption.service;
+
+import com.alexeiddg.backend.decryption.model.DecryptionRequest;
+import com.alexeiddg.backend.decryption.service.DecryptionResultCache.Stats;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A 100 KB budget holds about 88 one-KB entries; batch is left out to check the per-endpoint switch
+@SpringBootTest(properties = {
+        "cipher.result-cache.enabled=true",
+        "cipher.result-cache.endpoints=decrypt,binary",
+        "cipher.result-cache.max-bytes=100000",
+        "cipher.result-cache.ttl=2s"
+})
+class DecryptionResultCacheTests {
+
+    @Autowired
+    private DecryptionResultCache resultCache;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    private final Random random = new Random(23);
+
+    @BeforeEach
+    void clear() {
+        resultCache.clear();
+    }
+
+    @Test
+    void repeatedDecryptionsAreServedFromTheCache() throws Exception {
+        EncryptionResponse response = encryptionService.encrypt("polled ".repeat(100));
+        String first = decryptionService.decrypt(response.getEncryptionKey(), response.getCipherText());
+        Stats before = resultCache.stats();
+        assertEquals(first, decryptionService.decrypt(response.getEncryptionKey(), response.getCipherText()));
+        assertEquals(before.hits() + 1, resultCache.stats().hits());
+        assertTrue(resultCache.stats().bytesSaved() > before.bytesSaved());
+
+        // Batch items bypass the cache
+        DecryptionRequest item = new DecryptionRequest(response.getCipherText(), response.getEncryptionKey());
+        Stats beforeBatch = resultCache.stats();
+        assertEquals(first, decryptionService.decryptBatch(List.of(item)).getFirst().get().getText());
+        assertEquals(beforeBatch.hits(), resultCache.stats().hits());
+        assertEquals(beforeBatch.misses(), resultCache.stats().misses());
+
+        byte[] plain = new byte[4000];
+        random.nextBytes(plain);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        encryptionService.encryptFrame(new ByteArrayInputStream(plain), plain.length, frame);
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            decryptionService.decryptFrame(new ByteArrayInputStream(frame.toByteArray()), frame.size(), decrypted);
+            assertArrayEquals(plain, decrypted.toByteArray());
+        }
+        assertEquals(beforeBatch.hits() + 1, resultCache.stats().hits());
+    }
+
+    @Test
+    void oneOffEntriesDoNotDisplaceFrequentOnes() {
+        List<byte[]> hot = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            byte[] digest = digest();
+            assertNull(resultCache.get(digest));
+            resultCache.put(digest, new byte[1000], 0, 1000, 1008);
+            for (int hit = 0; hit < 3; hit++) {
+                assertNotNull(resultCache.get(digest));
+            }
+            hot.add(digest);
+        }
+        for (int i = 0; i < 500; i++) {
+            byte[] digest = digest();
+            assertNull(resultCache.get(digest));
+            resultCache.put(digest, new byte[1000], 0, 1000, 1008);
+        }
+
+        for (byte[] digest : hot) {
+            assertNotNull(resultCache.get(digest));
+        }
+        assertTrue(resultCache.stats().bytes() <= 100000);
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws Exception {
+        byte[] digest = digest();
+        byte[] plain = {1, 2, 3};
+        resultCache.put(digest, plain, 0, plain.length, 16);
+        assertArrayEquals(plain, resultCache.get(digest));
+        Thread.sleep(2100);
+        assertNull(resultCache.get(digest));
+    }
+
+    @Test
+    void untouchedEntriesAreDroppedAfterTheTtl() throws Exception {
+        byte[] plain = new byte[500];
+        random.nextBytes(plain);
+        resultCache.put(digest(), plain, 0, plain.length, 512);
+        long evictions = resultCache.stats().evictions();
+        assertEquals(1, resultCache.stats().size());
+
+        // Never looked up again: the sweeper (every ttl / 10) zeroes and removes it
+        Thread.sleep(2500);
+        Stats after = resultCache.stats();
+        assertEquals(0, after.size());
+        assertEquals(0, after.bytes());
+        assertEquals(evictions + 1, after.evictions());
+    }
+
+    private byte[] digest() {
+        byte[] digest = new byte[32];
+        random.nextBytes(digest);
+        return digest;
+    }
+}
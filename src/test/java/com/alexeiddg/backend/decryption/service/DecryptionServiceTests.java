@@ -0,0 +1,156 @@
+package com.alexeiddg.backend.decryption.service;
+
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.encryption.service.SBoxService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "cipher.compression.enabled=true")
+class DecryptionServiceTests {
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    @Test
+    void dispatchesOnFormatVersion() throws Exception {
+        String text = "format dispatch é";
+        for (CipherFormat format : CipherFormat.values()) {
+            for (int rounds : new int[]{1, 7, 24}) {
+                byte[] keyBytes = new byte[16];
+                keyBytes[0] = (byte) rounds;
+                keyBytes[9] = 0x33;
+                EncryptionResponse response = encryptionService.encrypt(text, KeyMatrix.rebuildMatrix(keyBytes), format);
+
+                byte[] cipherBytes = Base64.getUrlDecoder().decode(response.getCipherText());
+                assertEquals(format.headerLength(), cipherBytes.length % 16);
+                assertEquals(text, decryptionService.decrypt(response.getEncryptionKey(), response.getCipherText()));
+            }
+        }
+    }
+
+    // Both the unknown-length (chunked) and the known Content-Length body paths
+    @Test
+    void binaryFramesRoundTrip() throws Exception {
+        for (int length : new int[]{0, 15, 16, 4097}) {
+            for (boolean knownLength : new boolean[]{false, true}) {
+                byte[] plain = new byte[length];
+                new Random(length).nextBytes(plain);
+
+                ByteArrayOutputStream frame = new ByteArrayOutputStream();
+                encryptionService.encryptFrame(new ByteArrayInputStream(plain), knownLength ? length : -1, frame);
+                byte[] frameBytes = frame.toByteArray();
+                assertEquals(BinaryFrame.HEADER_LENGTH + (length / 16 + 1) * 16, frameBytes.length);
+                assertEquals(frameBytes[2], frameBytes[18]);
+
+                ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+                decryptionService.decryptFrame(new ByteArrayInputStream(frameBytes), knownLength ? frameBytes.length : -1, decrypted);
+                assertArrayEquals(plain, decrypted.toByteArray());
+
+                byte[] truncated = Arrays.copyOf(frameBytes, frameBytes.length - 1);
+                assertThrows(IllegalArgumentException.class, () -> decryptionService.decryptFrame(
+                        new ByteArrayInputStream(truncated), truncated.length, new ByteArrayOutputStream()));
+            }
+        }
+    }
+
+    @Test
+    void oversizedFramesAreRejectedWith413() throws Exception {
+        Object previous = ReflectionTestUtils.getField(encryptionService, "maxFrameSize");
+        ReflectionTestUtils.setField(encryptionService, "maxFrameSize", 100);
+        try {
+            byte[] fits = new byte[100];
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            encryptionService.encryptFrame(new ByteArrayInputStream(fits), fits.length, frame);
+            assertEquals(BinaryFrame.HEADER_LENGTH + 112, frame.size());
+
+            byte[] plain = new byte[101];
+            for (long contentLength : new long[]{plain.length, -1}) {
+                ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> encryptionService.encryptFrame(
+                        new ByteArrayInputStream(plain), contentLength, new ByteArrayOutputStream()));
+                assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatusCode());
+            }
+        } finally {
+            ReflectionTestUtils.setField(encryptionService, "maxFrameSize", previous);
+        }
+    }
+
+    // Limits whose frame sizes would overflow int are refused at startup
+    @Test
+    void maxPayloadSizeIsCappedAtStartup() {
+        for (int maxFrameSize : new int[]{-1, BinaryFrame.MAX_PAYLOAD_LENGTH + 1, Integer.MAX_VALUE}) {
+            EncryptionService service = new EncryptionService();
+            ReflectionTestUtils.setField(service, "maxFrameSize", maxFrameSize);
+            assertThrows(IllegalArgumentException.class, () -> ReflectionTestUtils.invokeMethod(service, "validate"));
+        }
+    }
+
+    @Test
+    void compressiblePayloadsAreDeflatedAndIncompressibleOnesAreNot() throws Exception {
+        String json = "{\"level\":\"INFO\",\"message\":\"request served\",\"status\":200}\n".repeat(200);
+        byte[] keyBytes = new byte[16];
+        keyBytes[0] = 4;
+        EncryptionResponse response = encryptionService.encrypt(json, KeyMatrix.rebuildMatrix(keyBytes), CipherFormat.V2);
+        byte[] cipherBytes = Base64.getUrlDecoder().decode(response.getCipherText());
+        assertEquals(CipherFormat.FLAG_DEFLATE, cipherBytes[1]);
+        assertTrue(cipherBytes.length < json.length() / 5);
+        assertEquals(json, decryptionService.decrypt(response.getEncryptionKey(), response.getCipherText()));
+
+        byte[] random = new byte[100_000];
+        new Random(17).nextBytes(random);
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        encryptionService.encryptFrame(new ByteArrayInputStream(random), random.length, frame);
+        assertEquals(0, frame.toByteArray()[1]);
+
+        frame.reset();
+        byte[] logs = json.getBytes(StandardCharsets.UTF_8);
+        encryptionService.encryptFrame(new ByteArrayInputStream(logs), logs.length, frame);
+        byte[] frameBytes = frame.toByteArray();
+        assertEquals(CipherFormat.FLAG_DEFLATE, frameBytes[1]);
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decryptionService.decryptFrame(new ByteArrayInputStream(frameBytes), frameBytes.length, decrypted);
+        assertArrayEquals(logs, decrypted.toByteArray());
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] cipherBytes = new byte[18];
+        cipherBytes[0] = 9;
+        String cipherText = Base64.getUrlEncoder().encodeToString(cipherBytes);
+        assertThrows(IllegalArgumentException.class,
+                () -> decryptionService.decrypt("01000000000000000000000000000000", cipherText));
+    }
+
+    @Test
+    void v2SBoxIsAPermutationDistinctFromV1() throws Exception {
+        byte[] key = new byte[16];
+        key[0] = 5;
+        byte[] sBox = SBoxService.generateSBoxV2(key);
+        boolean[] seen = new boolean[256];
+        for (byte value : sBox) {
+            assertFalse(seen[value & 0xFF]);
+            seen[value & 0xFF] = true;
+        }
+        assertArrayEquals(sBox, SBoxService.generateSBoxV2(key));
+        assertFalse(Arrays.equals(sBox, SBoxService.generateSBox(key)));
+    }
+}
@@ -0,0 +1,199 @@
+package com.alexeiddg.backend.decryption.service;
+
+import com.alexeiddg.backend.decryption.model.DecryptedRange;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import com.alexeiddg.backend.util.StringToBitstream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RangeDecryptionServiceTests {
+
+    private static final long[][] RANGES = {{0, 1}, {0, 16}, {5, 30}, {15, 2}, {16, 16}, {777, 100}, {990, 100}, {1000, 5}, {0, 5000}};
+
+    @Autowired
+    private RangeDecryptionService rangeDecryptionService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Test
+    void textRangesMatchTheFullPlaintext() throws Exception {
+        String text = randomText(1000);
+        byte[] plain = text.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = new byte[16];
+        new Random(20).nextBytes(keyBytes);
+        keyBytes[0] = 11;
+        String clientKey = KeyMatrix.rebuildMatrix(keyBytes).flattenToHex();
+
+        // Both formats as /api/encrypt writes them by default, plus a deflated v2 ciphertext (compression
+        // enabled), which goes through the decrypt-whole fallback
+        List<String> cipherTexts = new ArrayList<>();
+        for (CipherFormat format : CipherFormat.values()) {
+            cipherTexts.add(encryptionService.encrypt(text, KeyMatrix.rebuildMatrix(keyBytes), format).getCipherText());
+        }
+        cipherTexts.add(deflatedCipherText(plain, keyBytes));
+        for (String cipherText : cipherTexts) {
+            for (long[] range : RANGES) {
+                DecryptedRange decrypted = rangeDecryptionService.decryptRange(clientKey, cipherText, range[0], (int) range[1]);
+                assertArrayEquals(slice(plain, range), decrypted.data());
+                assertEquals(plain.length, decrypted.plaintextLength());
+            }
+            assertThrows(ResponseStatusException.class, () -> rangeDecryptionService.decryptRange(
+                    clientKey, cipherText, 1001, 1));
+        }
+    }
+
+    @Test
+    void defaultTextCiphertextsAreReadByRange() throws Exception {
+        // Compressible JSON, as most payloads are; with the default settings it is not deflated
+        String json = "{\"level\":\"INFO\",\"message\":\"request served\",\"status\":200}\n".repeat(2000);
+        byte[] keyBytes = new byte[16];
+        keyBytes[0] = 7;
+        EncryptionResponse response = encryptionService.encrypt(json, KeyMatrix.rebuildMatrix(keyBytes));
+        CiphertextSource decoded = CiphertextSource.ofBase64(response.getCipherText(), 0);
+        byte[] header = new byte[2];
+        decoded.read(0, header, 0, 2);
+        assertEquals(CipherFormat.V2, CipherFormat.detect(decoded.length(), header));
+        assertEquals(0, CipherFormat.V2.flags(header));
+
+        CiphertextSource blocks = CiphertextSource.ofBase64(response.getCipherText(), 2);
+        long[] bytesRead = {0};
+        CiphertextSource counting = new CiphertextSource() {
+            @Override
+            public long length() {
+                return blocks.length();
+            }
+
+            @Override
+            public void read(long position, byte[] buffer, int offset, int length) throws IOException {
+                bytesRead[0] += length;
+                blocks.read(position, buffer, offset, length);
+            }
+        };
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes), CipherFormat.V2)) {
+            DecryptedRange range = rangeDecryptionService.decryptRange(counting, schedule, 0, 50_003, 40);
+            assertArrayEquals(Arrays.copyOfRange(json.getBytes(StandardCharsets.UTF_8), 50_003, 50_043), range.data());
+            assertTrue(bytesRead[0] <= 32 + 16 + 48, "read " + bytesRead[0] + " bytes");
+        }
+    }
+
+    @Test
+    void readsOnlyTheBlocksAroundTheRange() throws Exception {
+        byte[] plain = new byte[1 << 20];
+        new Random(21).nextBytes(plain);
+        byte[] keyBytes = new byte[16];
+        keyBytes[0] = 4;
+
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+            ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+            encryptionService.encryptStream(new ByteArrayInputStream(plain), cipher, KeyMatrix.rebuildMatrix(keyBytes));
+            byte[] cipherBytes = cipher.toByteArray();
+
+            long[] bytesRead = {0};
+            CiphertextSource counting = new CiphertextSource() {
+                @Override
+                public long length() {
+                    return cipherBytes.length;
+                }
+
+                @Override
+                public void read(long position, byte[] buffer, int offset, int length) {
+                    bytesRead[0] += length;
+                    System.arraycopy(cipherBytes, (int) position, buffer, offset, length);
+                }
+            };
+
+            DecryptedRange range = rangeDecryptionService.decryptRange(counting, schedule, 0, 500_003, 40);
+            assertArrayEquals(Arrays.copyOfRange(plain, 500_003, 500_043), range.data());
+            assertTrue(bytesRead[0] <= 32 + 16 + 48, "read " + bytesRead[0] + " bytes");
+        }
+    }
+
+    @Test
+    void fileAndFrameRangesMatchTheFullPlaintext(@TempDir Path directory) throws Exception {
+        byte[] plain = new byte[1000];
+        new Random(22).nextBytes(plain);
+        String clientKey = KeyMatrix.rebuildMatrix(keyWithRounds(6)).flattenToHex();
+
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        encryptionService.encryptStream(new ByteArrayInputStream(plain), cipher, KeyMatrix.fromHex(clientKey));
+        Path file = Files.write(directory.resolve("blob.enc"), cipher.toByteArray());
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        encryptionService.encryptFrame(new ByteArrayInputStream(plain), plain.length, frame);
+        Path frameFile = Files.write(directory.resolve("blob.frame"), frame.toByteArray());
+
+        for (long[] range : RANGES) {
+            assertArrayEquals(slice(plain, range), rangeDecryptionService.decryptFileRange(file, clientKey, range[0], (int) range[1]).data());
+            assertArrayEquals(slice(plain, range), rangeDecryptionService.decryptFrameRange(frameFile, range[0], (int) range[1]).data());
+        }
+    }
+
+    // What EncryptionService writes for v2 with compression enabled
+    private String deflatedCipherText(byte[] plain, byte[] keyBytes) throws Exception {
+        Deflater deflater = new Deflater(1);
+        deflater.setInput(plain);
+        deflater.finish();
+        byte[] buffer = new byte[plain.length + 64];
+        byte[] compressed = Arrays.copyOf(buffer, deflater.deflate(buffer));
+        deflater.end();
+
+        byte[] blocks = StringToBitstream.generateBlockPadding(compressed, CipherFormat.V2.headerLength());
+        CipherFormat.V2.writeHeader(blocks, CipherFormat.FLAG_DEFLATE);
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes), CipherFormat.V2)) {
+            blockEngine.encrypt(blocks, CipherFormat.V2.headerLength(), blocks.length - CipherFormat.V2.headerLength(), schedule);
+        }
+        return Base64.getUrlEncoder().encodeToString(blocks);
+    }
+
+    private static byte[] slice(byte[] plain, long[] range) {
+        return Arrays.copyOfRange(plain, (int) range[0], (int) Math.min(range[0] + range[1], plain.length));
+    }
+
+    private static byte[] keyWithRounds(int rounds) {
+        byte[] keyBytes = new byte[16];
+        new Random(rounds).nextBytes(keyBytes);
+        keyBytes[0] = (byte) rounds;
+        return keyBytes;
+    }
+
+    private static String randomText(int length) {
+        Random random = new Random(length);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.alexeiddg.backend.encryption.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class EncryptionControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExecutorService cipherExecutor;
+
+    @Value("${cipher.batch-api.max-items}")
+    private int maxBatchItems;
+
+    // The handler returns at once with async started, so the request thread is free while the rounds run
+    @Test
+    void encryptReleasesTheRequestThread() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/encrypt")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\": \"hello async\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cipherText").isNotEmpty())
+                .andExpect(jsonPath("$.encryptionKey").isNotEmpty());
+    }
+
+    @Test
+    void fullExecutorQueueIsShedWith503() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Occupy every thread and queue slot until a submission is rejected
+            while (true) {
+                try {
+                    cipherExecutor.execute(() -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+
+            mockMvc.perform(post("/api/encrypt")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"text\": \"hello\"}"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void batchResultsComeBackInRequestOrder() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/encrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"text\": \"first\"}, {\"text\": \"second\", \"appendable\": true}, {\"text\": \"\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[2].index").value(2))
+                .andExpect(jsonPath("$[*].status").value(everyItem(is("OK"))))
+                .andExpect(jsonPath("$[*].cipherText", hasSize(3)))
+                .andExpect(jsonPath("$[*].error", hasSize(0)));
+    }
+
+    // An item without text fails on its own; the items around it still encrypt
+    @Test
+    void failedItemOnlyFailsItsOwnEntry() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/encrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"text\": \"first\"}, {}, {\"text\": \"third\"}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].status").value("OK"))
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].status").value("ERROR"))
+                .andExpect(jsonPath("$[1].error").exists())
+                .andExpect(jsonPath("$[1].cipherText").doesNotExist())
+                .andExpect(jsonPath("$[2].index").value(2))
+                .andExpect(jsonPath("$[2].status").value("OK"));
+    }
+
+    @Test
+    void emptyBatchIsAnEmptyArray() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/encrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void overLimitBatchIsRejectedWith413() throws Exception {
+        String items = String.join(",", Collections.nCopies(maxBatchItems + 1, "{\"text\": \"x\"}"));
+        mockMvc.perform(post("/api/encrypt/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + items + "]"))
+                .andExpect(status().isPayloadTooLarge());
+    }
+}
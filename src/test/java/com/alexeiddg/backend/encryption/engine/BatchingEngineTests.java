@@ -0,0 +1,204 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"cipher.engine.batching.enabled=true", "cipher.engine.batching.window=2ms"})
+class BatchingEngineTests {
+
+    @Autowired
+    private BatchingEngine batchingEngine;
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    @Test
+    void packedPassMatchesTheEnginePerMessage() throws Exception {
+        Random random = new Random(25);
+        for (int sample = 0; sample < 20; sample++) {
+            List<BatchingEngine.Message> messages = new ArrayList<>();
+            List<byte[]> plaintexts = new ArrayList<>();
+            List<byte[]> expected = new ArrayList<>();
+            try {
+                // Mixed round counts and lengths, some behind a header, so vectors mix messages
+                for (int i = 0; i < random.nextInt(30) + 1; i++) {
+                    byte[] keyBytes = new byte[16];
+                    random.nextBytes(keyBytes);
+                    keyBytes[0] = (byte) (random.nextInt(24) + 1);
+                    KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes));
+                    int offset = random.nextInt(3);
+                    byte[] blocks = new byte[offset + 16 * (random.nextInt(6) + 1)];
+                    random.nextBytes(blocks);
+                    messages.add(new BatchingEngine.Message(blocks, offset, blocks.length - offset, schedule));
+                    plaintexts.add(blocks.clone());
+
+                    byte[] single = blocks.clone();
+                    blockEngine.encrypt(single, offset, single.length - offset, schedule);
+                    expected.add(single);
+                }
+
+                batchingEngine.encryptPacked(messages);
+                for (int i = 0; i < messages.size(); i++) {
+                    assertArrayEquals(expected.get(i), messages.get(i).blocks());
+                }
+                batchingEngine.decryptPacked(messages);
+                for (int i = 0; i < messages.size(); i++) {
+                    assertArrayEquals(plaintexts.get(i), messages.get(i).blocks());
+                }
+            } finally {
+                messages.forEach(message -> message.schedule().close());
+            }
+        }
+    }
+
+    // Rejected before queuing, so the message batched alongside it still completes
+    @Test
+    void malformedMessagesAreRejectedWithoutFailingTheBatch() throws Exception {
+        byte[] keyBytes = new byte[16];
+        new Random(26).nextBytes(keyBytes);
+        keyBytes[0] = 6;
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+            byte[] plain = new byte[32];
+            new Random(27).nextBytes(plain);
+            byte[] expected = plain.clone();
+            blockEngine.encrypt(expected, schedule);
+
+            byte[] blocks = plain.clone();
+            CompletableFuture<Void> valid = batchingEngine.encrypt(blocks, 0, blocks.length, schedule);
+            assertThrows(IllegalArgumentException.class, () -> batchingEngine.encrypt(new byte[24], 0, 24, schedule));
+            valid.join();
+            assertArrayEquals(expected, blocks);
+        }
+    }
+
+    // Encryptions and decryptions arriving in one window run as two packed passes
+    @Test
+    void mixedEncryptAndDecryptBatchesRoundTrip() throws Exception {
+        Random random = new Random(28);
+        List<KeySchedule> schedules = new ArrayList<>();
+        try {
+            List<byte[]> plaintexts = new ArrayList<>();
+            List<byte[]> ciphertexts = new ArrayList<>();
+            List<byte[]> encrypting = new ArrayList<>();
+            List<byte[]> decrypting = new ArrayList<>();
+            List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                byte[] keyBytes = new byte[16];
+                random.nextBytes(keyBytes);
+                keyBytes[0] = (byte) (random.nextInt(24) + 1);
+                KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes));
+                schedules.add(schedule);
+                byte[] plain = new byte[16 * (random.nextInt(4) + 1)];
+                random.nextBytes(plain);
+                byte[] cipher = plain.clone();
+                blockEngine.encrypt(cipher, schedule);
+                plaintexts.add(plain);
+                ciphertexts.add(cipher);
+
+                byte[] toEncrypt = plain.clone();
+                byte[] toDecrypt = cipher.clone();
+                encrypting.add(toEncrypt);
+                decrypting.add(toDecrypt);
+                done.add(batchingEngine.encrypt(toEncrypt, 0, toEncrypt.length, schedule));
+                done.add(batchingEngine.decrypt(toDecrypt, 0, toDecrypt.length, schedule));
+            }
+
+            CompletableFuture.allOf(done.toArray(CompletableFuture[]::new)).join();
+            for (int i = 0; i < plaintexts.size(); i++) {
+                assertArrayEquals(ciphertexts.get(i), encrypting.get(i));
+                assertArrayEquals(plaintexts.get(i), decrypting.get(i));
+            }
+        } finally {
+            schedules.forEach(KeySchedule::close);
+        }
+    }
+
+    // A separate engine whose window never closes within the test: shutting it down must still run
+    // every job it is holding
+    @Test
+    void shutdownRunsQueuedJobs() throws Exception {
+        BatchingEngine engine = new BatchingEngine();
+        for (String field : List.of("sBoxService", "cbcService", "fusedRoundKernel", "blockEngine", "cipherMetrics", "meterRegistry")) {
+            ReflectionTestUtils.setField(engine, field, ReflectionTestUtils.getField(batchingEngine, field));
+        }
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "window", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(engine, "maxMessageBlocks", 4);
+        ReflectionTestUtils.setField(engine, "maxBatchBlocks", 1024);
+        engine.initialize();
+
+        byte[] keyBytes = new byte[16];
+        new Random(29).nextBytes(keyBytes);
+        keyBytes[0] = 7;
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+            byte[] plain = new byte[32];
+            new Random(30).nextBytes(plain);
+            byte[] expected = plain.clone();
+            blockEngine.encrypt(expected, schedule);
+
+            List<byte[]> messages = new ArrayList<>();
+            List<CompletableFuture<Void>> done = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                byte[] blocks = plain.clone();
+                messages.add(blocks);
+                done.add(engine.encrypt(blocks, 0, blocks.length, schedule));
+            }
+            Thread.sleep(50);
+            assertTrue(done.stream().noneMatch(CompletableFuture::isDone));
+
+            engine.shutdown();
+            for (int i = 0; i < messages.size(); i++) {
+                assertTrue(done.get(i).isDone());
+                done.get(i).join();
+                assertArrayEquals(expected, messages.get(i));
+            }
+        }
+    }
+
+    @Test
+    void concurrentSmallMessagesRoundTrip() {
+        List<String> texts = new ArrayList<>();
+        List<CompletableFuture<EncryptionResponse>> encrypted = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            texts.add("message " + i + " ".repeat(i % 40));
+            encrypted.add(encryptionService.encryptAsync(texts.get(i)));
+        }
+
+        List<CompletableFuture<String>> decrypted = new ArrayList<>();
+        for (CompletableFuture<EncryptionResponse> future : encrypted) {
+            EncryptionResponse response = future.join();
+            decrypted.add(decryptionService.decryptAsync(response.getEncryptionKey(), response.getCipherText()));
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(texts.get(i), decrypted.get(i).join());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.encryption.service.*;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.util.HashService;
+import com.alexeiddg.backend.util.StringToBitstream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class BlockEngineTests {
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private SBoxService sBoxService;
+
+    @Autowired
+    private XORService xorService;
+
+    @Autowired
+    private TransformService transformService;
+
+    @Autowired
+    private TransposeService transposeService;
+
+    @Autowired
+    private CBCService cbcService;
+
+    @Autowired
+    private HashService hashService;
+
+    @Test
+    void encryptMatchesMatrixPipeline() throws Exception {
+        Random random = new Random(42);
+        for (int rounds = 1; rounds <= 24; rounds++) {
+            byte[] plain = new byte[random.nextInt(200)];
+            random.nextBytes(plain);
+            KeyMatrix key = randomKey(random, rounds);
+
+            byte[] blocks = StringToBitstream.generateBlockPadding(plain);
+            blockEngine.encrypt(blocks, key);
+
+            assertArrayEquals(referenceEncrypt(plain, key), blocks);
+        }
+    }
+
+    @Test
+    void decryptRoundTrips() throws Exception {
+        Random random = new Random(7);
+        for (int rounds = 1; rounds <= 24; rounds++) {
+            byte[] plain = new byte[random.nextInt(200)];
+            random.nextBytes(plain);
+            KeyMatrix key = randomKey(random, rounds);
+
+            byte[] blocks = StringToBitstream.generateBlockPadding(plain);
+            blockEngine.encrypt(blocks, key);
+            blockEngine.decrypt(blocks, key);
+
+            assertArrayEquals(plain, StringToBitstream.blocksToByteArray(blocks));
+        }
+    }
+
+    @Test
+    void largePayloadsSplitAcrossWorkersStayIdentical() throws Exception {
+        Random random = new Random(11);
+        byte[] plain = new byte[1 << 20];
+        random.nextBytes(plain);
+        KeyMatrix key = randomKey(random, 3);
+
+        byte[] blocks = StringToBitstream.generateBlockPadding(plain);
+        blockEngine.encrypt(blocks, key);
+        assertArrayEquals(referenceEncrypt(plain, key), blocks);
+
+        blockEngine.decrypt(blocks, key);
+        assertArrayEquals(plain, StringToBitstream.blocksToByteArray(blocks));
+    }
+
+    @Test
+    void zeroParallelThresholdIsRejected() {
+        BlockEngine engine = new BlockEngine();
+        ReflectionTestUtils.setField(engine, "parallelThresholdBlocks", 0);
+        assertThrows(IllegalArgumentException.class, engine::initialize);
+    }
+
+    private byte[] referenceEncrypt(byte[] plain, KeyMatrix key) throws Exception {
+        byte[][][] chunks = StringToBitstream.generateMatrixPadding(plain);
+        chunks = sBoxService.applySBoxSubstitution(chunks, SBoxService.generateSBox(key.flattenMatrix()));
+
+        int rounds = Byte.toUnsignedInt(key.matrix()[0][0]);
+        for (int i = 0; i < rounds; i++) {
+            chunks = xorService.xorBitstream(chunks, key);
+            for (int j = 0; j < chunks.length; j++) {
+                chunks[j] = transformService.performBitShift(chunks[j], key, true);
+                chunks[j] = transposeService.transposeMatrix(chunks[j], key);
+            }
+            key = hashService.applySha256ToMatrix(key);
+        }
+        chunks = cbcService.applyCBC(chunks, key);
+
+        byte[] flat = new byte[chunks.length * 16];
+        for (int i = 0; i < flat.length; i++) {
+            flat[i] = chunks[i / 16][(i % 16) / 4][i % 4];
+        }
+        return flat;
+    }
+
+    private KeyMatrix randomKey(Random random, int rounds) {
+        byte[] keyBytes = new byte[16];
+        random.nextBytes(keyBytes);
+        keyBytes[0] = (byte) rounds;
+        return KeyMatrix.rebuildMatrix(keyBytes);
+    }
+}
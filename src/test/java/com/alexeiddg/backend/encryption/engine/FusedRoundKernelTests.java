@@ -0,0 +1,93 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class FusedRoundKernelTests {
+
+    @Autowired
+    private ReferenceRoundKernel referenceRoundKernel;
+
+    @Autowired
+    private FusedRoundKernel fusedRoundKernel;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Test
+    void fusedRoundsMatchReferenceRounds() throws Exception {
+        Random random = new Random(2024);
+        for (int sample = 0; sample < 200; sample++) {
+            byte[] keyBytes = new byte[16];
+            random.nextBytes(keyBytes);
+            keyBytes[0] = (byte) (random.nextInt(24) + 1);
+
+            byte[] blocks = new byte[16 * (random.nextInt(8) + 1)];
+            random.nextBytes(blocks);
+
+            try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+                byte[] expected = blocks.clone();
+                byte[] actual = blocks.clone();
+                referenceRoundKernel.encryptRounds(expected, 0, expected.length, schedule);
+                fusedRoundKernel.encryptRounds(actual, 0, actual.length, schedule);
+                assertArrayEquals(expected, actual);
+
+                referenceRoundKernel.decryptRounds(expected, 0, expected.length, schedule);
+                fusedRoundKernel.decryptRounds(actual, 0, actual.length, schedule);
+                assertArrayEquals(expected, actual);
+                assertArrayEquals(blocks, actual);
+            }
+        }
+    }
+
+    @Test
+    void fusedRoundsOnlyTouchTheRequestedRange() throws Exception {
+        byte[] keyBytes = new byte[16];
+        Arrays.fill(keyBytes, (byte) 0x3c);
+        keyBytes[0] = 5;
+
+        byte[] blocks = new byte[64];
+        Arrays.fill(blocks, (byte) 0x11);
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+            fusedRoundKernel.encryptRounds(blocks, 16, 32, schedule);
+        }
+
+        assertArrayEquals(Arrays.copyOfRange(blocks, 0, 16), filled(16));
+        assertArrayEquals(Arrays.copyOfRange(blocks, 48, 64), filled(16));
+    }
+
+    @Test
+    void cachedConstantsAreZeroedWhenTheScheduleIsReleased() throws Exception {
+        byte[] keyBytes = new byte[16];
+        new Random(3).nextBytes(keyBytes);
+        keyBytes[0] = 8;
+
+        KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes));
+        long[] encrypt = fusedRoundKernel.constants(schedule, true);
+        long[] decrypt = fusedRoundKernel.constants(schedule, false);
+        assertSame(encrypt, fusedRoundKernel.constants(schedule, true));
+        assertTrue(Arrays.stream(encrypt).anyMatch(value -> value != 0));
+
+        schedule.close();
+        assertTrue(Arrays.stream(encrypt).allMatch(value -> value == 0));
+        assertTrue(Arrays.stream(decrypt).allMatch(value -> value == 0));
+    }
+
+    private byte[] filled(int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) 0x11);
+        return bytes;
+    }
+}
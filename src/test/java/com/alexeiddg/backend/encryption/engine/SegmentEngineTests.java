@@ -0,0 +1,132 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.batch.model.BatchManifestEntry;
+import com.alexeiddg.backend.batch.service.FileCipherService;
+import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.encryption.model.BinaryFrame;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import com.alexeiddg.backend.util.StringToBitstream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Small thresholds and windows so the off-heap, parallel and multi-window paths all run on test-sized data
+@SpringBootTest(properties = {
+        "cipher.engine.off-heap.threshold-bytes=1024",
+        "cipher.engine.parallel.pool-size=2",
+        "cipher.engine.parallel.threshold-blocks=16",
+        "cipher.batch.window-size=4096"
+})
+class SegmentEngineTests {
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private SegmentEngine segmentEngine;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    @Autowired
+    private FileCipherService fileCipherService;
+
+    @Test
+    void segmentsMatchHeapBlocks() throws Exception {
+        Random random = new Random(19);
+        for (int blocks : new int[]{1, 3, 15, 16, 17, 200}) {
+            byte[] keyBytes = new byte[16];
+            random.nextBytes(keyBytes);
+            keyBytes[0] = (byte) (random.nextInt(24) + 1);
+            byte[] plain = new byte[blocks * 16];
+            random.nextBytes(plain);
+
+            try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes));
+                 Arena arena = Arena.ofShared()) {
+                byte[] expected = plain.clone();
+                blockEngine.encrypt(expected, schedule);
+
+                MemorySegment segment = arena.allocate(plain.length);
+                MemorySegment.copy(plain, 0, segment, ValueLayout.JAVA_BYTE, 0, plain.length);
+                segmentEngine.encrypt(segment, schedule);
+                assertArrayEquals(expected, segment.toArray(ValueLayout.JAVA_BYTE));
+
+                segmentEngine.decrypt(segment, schedule);
+                assertArrayEquals(plain, segment.toArray(ValueLayout.JAVA_BYTE));
+            }
+        }
+    }
+
+    @Test
+    void offHeapFramesRoundTrip() throws Exception {
+        for (int length : new int[]{1024, 4096, 10000}) {
+            byte[] plain = new byte[length];
+            new Random(length).nextBytes(plain);
+
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            encryptionService.encryptFrame(new ByteArrayInputStream(plain), length, frame);
+            byte[] frameBytes = frame.toByteArray();
+
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            decryptionService.decryptFrame(new ByteArrayInputStream(frameBytes), frameBytes.length, decrypted);
+            assertArrayEquals(plain, decrypted.toByteArray());
+        }
+    }
+
+    // The off-heap frame's payload is byte for byte what the heap engine writes with the frame's key
+    @Test
+    void offHeapFramesMatchHeapEncryption() throws Exception {
+        byte[] plain = new byte[10000];
+        new Random(25).nextBytes(plain);
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        encryptionService.encryptFrame(new ByteArrayInputStream(plain), plain.length, frame);
+        byte[] frameBytes = frame.toByteArray();
+        BinaryFrame.Header header = BinaryFrame.readHeader(frameBytes, frameBytes.length);
+
+        byte[] expected = StringToBitstream.generateBlockPadding(plain);
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(header.key()), header.format())) {
+            blockEngine.encrypt(expected, schedule);
+        }
+        assertArrayEquals(expected, Arrays.copyOfRange(frameBytes, BinaryFrame.HEADER_LENGTH, frameBytes.length));
+    }
+
+    @Test
+    void mappedFilesRoundTripAcrossWindows(@TempDir Path directory) throws Exception {
+        for (int length : new int[]{0, 100, 4096, 10000}) {
+            byte[] plain = new byte[length];
+            new Random(length).nextBytes(plain);
+            Path source = Files.write(directory.resolve("plain-" + length), plain);
+            Path encrypted = directory.resolve("plain-" + length + ".enc");
+            Path decrypted = directory.resolve("plain-" + length + ".dec");
+
+            BatchManifestEntry entry = fileCipherService.encryptFile(source, encrypted, "plain", "plain.enc");
+            assertEquals((length / 16 + 1) * 16, Files.size(encrypted));
+            fileCipherService.decryptFile(encrypted, decrypted, "plain.enc", "plain", entry.getClientKey());
+            assertArrayEquals(plain, Files.readAllBytes(decrypted));
+        }
+    }
+}
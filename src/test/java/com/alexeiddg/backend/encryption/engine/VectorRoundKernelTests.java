@@ -0,0 +1,79 @@
+package com.alexeiddg.backend.encryption.engine;
+
+import com.alexeiddg.backend.encryption.service.CBCService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+class VectorRoundKernelTests {
+
+    @Autowired
+    private ReferenceRoundKernel referenceRoundKernel;
+
+    @Autowired
+    private FusedRoundKernel fusedRoundKernel;
+
+    @Autowired
+    private CBCService cbcService;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    private VectorKernel vectorKernel;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent());
+        vectorKernel = new VectorRoundKernel(fusedRoundKernel);
+    }
+
+    @Test
+    void vectorRoundsMatchReferenceRounds() throws Exception {
+        Random random = new Random(99);
+        for (int sample = 0; sample < 100; sample++) {
+            byte[] keyBytes = new byte[16];
+            random.nextBytes(keyBytes);
+            keyBytes[0] = (byte) (random.nextInt(24) + 1);
+
+            byte[] blocks = new byte[16 * (random.nextInt(40) + 1)];
+            random.nextBytes(blocks);
+
+            try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+                byte[] expected = blocks.clone();
+                byte[] actual = blocks.clone();
+                referenceRoundKernel.encryptRounds(expected, 0, expected.length, schedule);
+                vectorKernel.encryptRounds(actual, 0, actual.length, schedule);
+                assertArrayEquals(expected, actual);
+
+                vectorKernel.decryptRounds(actual, 0, actual.length, schedule);
+                assertArrayEquals(blocks, actual);
+            }
+        }
+    }
+
+    @Test
+    void vectorReverseCbcMatchesScalar() {
+        Random random = new Random(5);
+        byte[] iv = new byte[16];
+        random.nextBytes(iv);
+        for (int count = 1; count <= 40; count++) {
+            byte[] blocks = new byte[16 * count];
+            random.nextBytes(blocks);
+
+            byte[] expected = blocks.clone();
+            cbcService.reverseCBC(expected, 0, expected.length, iv);
+            vectorKernel.reverseCBC(blocks, 0, blocks.length, iv);
+            assertArrayEquals(expected, blocks);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.alexeiddg.backend.encryption.pipeline;
+
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.encryption.engine.ReferenceRoundKernel;
+import com.alexeiddg.backend.encryption.service.SBoxService;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "cipher.engine.kernel=pipeline")
+class CipherPipelineTests {
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private SBoxService sBoxService;
+
+    @Autowired
+    private ReferenceRoundKernel referenceRoundKernel;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Autowired
+    private PipelineCache pipelineCache;
+
+    @Test
+    void compiledPipelineMatchesReferenceStages() throws Exception {
+        Random random = new Random(18);
+        for (int sample = 0; sample < 200; sample++) {
+            byte[] keyBytes = new byte[16];
+            random.nextBytes(keyBytes);
+            keyBytes[0] = (byte) (random.nextInt(24) + 1);
+
+            byte[] blocks = new byte[16 * (random.nextInt(8) + 1)];
+            random.nextBytes(blocks);
+
+            try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+                byte[] expected = blocks.clone();
+                sBoxService.applySBoxSubstitution(expected, 0, expected.length, schedule.getSBox());
+                referenceRoundKernel.encryptRounds(expected, 0, expected.length, schedule);
+
+                byte[] actual = blocks.clone();
+                CompiledPipeline pipeline = pipelineCache.get(schedule);
+                pipeline.encrypt(actual, 0, actual.length);
+                assertArrayEquals(expected, actual);
+
+                pipeline.decrypt(actual, 0, actual.length);
+                assertArrayEquals(blocks, actual);
+            }
+        }
+    }
+
+    @Test
+    void decryptPathRunsInversesInReverseOrder() {
+        byte[] sBox = new byte[256];
+        byte[] inverseSBox = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            sBox[i] = (byte) (i * 7 + 3);
+            inverseSBox[(i * 7 + 3) & 0xFF] = (byte) i;
+        }
+        CompiledPipeline pipeline = CipherPipeline.builder()
+                .stage(new SubstitutionStage(sBox, inverseSBox))
+                .stage(RotateStage.of(new int[]{1, 2, 3, 4}))
+                .stage(XorStage.of(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16}))
+                .build()
+                .compile();
+
+        byte[] blocks = new byte[48];
+        new Random(5).nextBytes(blocks);
+        byte[] original = blocks.clone();
+        pipeline.encrypt(blocks, 16, 16);
+        pipeline.decrypt(blocks, 16, 16);
+        assertArrayEquals(original, blocks);
+    }
+
+    @Test
+    void cachedStagesAreWipedWhenTheScheduleIsReleased() throws Exception {
+        byte[] keyBytes = new byte[16];
+        new Random(9).nextBytes(keyBytes);
+        keyBytes[0] = 4;
+
+        KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes));
+        CompiledPipeline pipeline = pipelineCache.get(schedule);
+        assertSame(pipeline, pipelineCache.get(schedule));
+        long[] roundKey = ((XorStage) pipeline.stages().get(1)).key();
+        assertTrue(roundKey[0] != 0 || roundKey[1] != 0);
+
+        schedule.close();
+        assertArrayEquals(new long[2], roundKey);
+        for (CipherStage stage : pipeline.stages()) {
+            if (stage instanceof TransposeStage transpose) {
+                assertArrayEquals(new int[16], transpose.forwardSource());
+            }
+        }
+    }
+
+    @Test
+    void engineRunsThePipelineKernel() throws Exception {
+        assertEquals("pipeline", blockEngine.activeKernel());
+
+        byte[] keyBytes = new byte[16];
+        new Random(7).nextBytes(keyBytes);
+        keyBytes[0] = 9;
+        byte[] blocks = new byte[16 * 5000];
+        new Random(8).nextBytes(blocks);
+
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+            byte[] actual = blocks.clone();
+            blockEngine.encrypt(actual, schedule);
+            blockEngine.decrypt(actual, schedule);
+            assertArrayEquals(blocks, actual);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.alexeiddg.backend.encryption.service;
+
+import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.encryption.model.EncryptionAppendResponse;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Compression on, so compressible texts are deflated unless they are encrypted as appendable
+@SpringBootTest(properties = "cipher.compression.enabled=true")
+class AppendServiceTests {
+
+    @Autowired
+    private AppendService appendService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    @Test
+    void appendedTextDecryptsAsOneMessage() throws Exception {
+        byte[] keyBytes = new byte[16];
+        new Random(24).nextBytes(keyBytes);
+        keyBytes[0] = 9;
+        String clientKey = KeyMatrix.rebuildMatrix(keyBytes).flattenToHex();
+
+        // Short texts stay under the compression threshold, so v2 is appendable too
+        for (CipherFormat format : CipherFormat.values()) {
+            for (String first : new String[]{"", "fifteen chars!!", "sixteen chars!!!", "seventeen chars!!"}) {
+                String expected = first;
+                String cipherText = encryptionService.encrypt(first, KeyMatrix.fromHex(clientKey), format).getCipherText();
+                for (String more : new String[]{"a", "", " sixteen more!!!", " and a longer line of log output"}) {
+                    EncryptionAppendResponse response = appendService.append(clientKey, cipherText, more);
+                    cipherText = splice(cipherText, response);
+                    expected += more;
+                    assertEquals(expected, decryptionService.decrypt(clientKey, cipherText));
+                }
+            }
+        }
+    }
+
+    @Test
+    void compressibleTextIsAppendableOnlyWhenRequested() throws Exception {
+        String logs = "GET /api/encrypt 200\n".repeat(200);
+        EncryptionResponse deflated = encryptionService.encryptAsync(logs).join();
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> appendService.append(deflated.getEncryptionKey(), deflated.getCipherText(), "more"));
+        assertEquals(409, e.getStatusCode().value());
+
+        EncryptionResponse appendable = encryptionService.encryptAsync(logs, true).join();
+        EncryptionAppendResponse response = appendService.append(appendable.getEncryptionKey(), appendable.getCipherText(), "more");
+        assertEquals(logs + "more", decryptionService.decrypt(appendable.getEncryptionKey(), splice(appendable.getCipherText(), response)));
+    }
+
+    @Test
+    void filesGrowInPlace(@TempDir Path directory) throws Exception {
+        byte[] plain = new byte[1000];
+        new Random(25).nextBytes(plain);
+        KeyMatrix key = encryptionService.getEncryptionKey();
+        String clientKey = key.flattenToHex();
+
+        ByteArrayOutputStream cipher = new ByteArrayOutputStream();
+        encryptionService.encryptStream(new ByteArrayInputStream(plain), cipher, key);
+        Path file = Files.write(directory.resolve("log.enc"), cipher.toByteArray());
+
+        byte[] expected = plain;
+        for (int length : new int[]{1, 15, 16, 5000}) {
+            byte[] more = new byte[length];
+            new Random(length).nextBytes(more);
+            assertEquals(length, appendService.appendFile(file, clientKey, new ByteArrayInputStream(more)));
+            expected = concat(expected, more);
+            assertArrayEquals(expected, decryptFile(file, clientKey));
+        }
+
+        // The same append through the tail-only stream API matches the in-place one
+        byte[] cipherBytes = Files.readAllBytes(file);
+        byte[] tail = Arrays.copyOfRange(cipherBytes, cipherBytes.length - 32, cipherBytes.length);
+        ByteArrayOutputStream replacement = new ByteArrayOutputStream();
+        appendService.appendStream(clientKey, tail, new ByteArrayInputStream(new byte[]{42}), replacement);
+        appendService.appendFile(file, clientKey, new ByteArrayInputStream(new byte[]{42}));
+        assertArrayEquals(concat(Arrays.copyOf(cipherBytes, cipherBytes.length - 16), replacement.toByteArray()),
+                Files.readAllBytes(file));
+
+        // A wrong key that fails the padding check leaves the file untouched (most do, not all; see continueChain)
+        byte[] before = Files.readAllBytes(file);
+        byte[] otherKey = new byte[16];
+        otherKey[0] = 3;
+        assertThrows(IllegalArgumentException.class, () -> appendService.appendFile(file,
+                KeyMatrix.rebuildMatrix(otherKey).flattenToHex(), new ByteArrayInputStream(new byte[]{1})));
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    private byte[] decryptFile(Path file, String clientKey) throws Exception {
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decryptionService.decryptStream(clientKey, Files.newInputStream(file), decrypted);
+        return decrypted.toByteArray();
+    }
+
+    private static String splice(String cipherText, EncryptionAppendResponse response) {
+        byte[] decoded = Base64.getUrlDecoder().decode(cipherText);
+        byte[] blocks = Base64.getUrlDecoder().decode(response.getCipherText());
+        return Base64.getUrlEncoder().encodeToString(concat(Arrays.copyOf(decoded, (int) response.getOffset()), blocks));
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+}
@@ -0,0 +1,81 @@
+package com.alexeiddg.backend.encryption.stream;
+
+import com.alexeiddg.backend.decryption.stream.DecryptingInputStream;
+import com.alexeiddg.backend.encryption.engine.BlockEngine;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.service.KeyScheduleService;
+import com.alexeiddg.backend.util.StringToBitstream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class StreamingCipherTests {
+
+    @Autowired
+    private BlockEngine blockEngine;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Test
+    void streamsMatchWholePayloadCipher() throws Exception {
+        Random random = new Random(3);
+        int[] lengths = {0, 1, 15, 16, 17, 47, 48, 49, 1000};
+        int[] bufferSizes = {16, 48, 4096};
+
+        for (int length : lengths) {
+            for (int bufferSize : bufferSizes) {
+                byte[] plain = new byte[length];
+                random.nextBytes(plain);
+                byte[] keyBytes = new byte[16];
+                random.nextBytes(keyBytes);
+                keyBytes[0] = (byte) (random.nextInt(24) + 1);
+
+                try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes))) {
+                    byte[] expected = StringToBitstream.generateBlockPadding(plain);
+                    blockEngine.encrypt(expected, schedule);
+
+                    ByteArrayOutputStream cipherOut = new ByteArrayOutputStream();
+                    try (EncryptingOutputStream encrypting = new EncryptingOutputStream(cipherOut, blockEngine, schedule, bufferSize)) {
+                        for (int i = 0; i < plain.length; i += 7) {
+                            encrypting.write(plain, i, Math.min(7, plain.length - i));
+                        }
+                    }
+                    assertArrayEquals(expected, cipherOut.toByteArray());
+
+                    InputStream trickle = new FilterInputStream(new ByteArrayInputStream(expected)) {
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            return super.read(b, off, Math.min(len, 5));
+                        }
+                    };
+                    try (DecryptingInputStream decrypting = new DecryptingInputStream(trickle, blockEngine, schedule, bufferSize)) {
+                        assertArrayEquals(plain, decrypting.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyCiphertextHasInvalidPadding() throws Exception {
+        byte[] keyBytes = new byte[16];
+        keyBytes[0] = 2;
+        try (KeySchedule schedule = keyScheduleService.buildSchedule(KeyMatrix.rebuildMatrix(keyBytes));
+             DecryptingInputStream decrypting = new DecryptingInputStream(new ByteArrayInputStream(new byte[0]), blockEngine, schedule, 32)) {
+            assertThrows(IOException.class, decrypting::readAllBytes);
+        }
+    }
+}
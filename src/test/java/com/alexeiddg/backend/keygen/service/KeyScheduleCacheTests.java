@@ -0,0 +1,41 @@
+package com.alexeiddg.backend.keygen.service;
+
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class KeyScheduleCacheTests {
+
+    @Autowired
+    private KeyScheduleCache keyScheduleCache;
+
+    @Test
+    void evictedSchedulesAreZeroedAfterLastLease() throws Exception {
+        keyScheduleCache.clear();
+        KeyScheduleCache.Stats before = keyScheduleCache.stats();
+
+        byte[] keyBytes = new byte[16];
+        keyBytes[0] = 3;
+        keyBytes[5] = 0x5a;
+        KeyMatrix key = KeyMatrix.rebuildMatrix(keyBytes);
+
+        KeySchedule first = keyScheduleCache.getSchedule(key);
+        KeySchedule second = keyScheduleCache.getSchedule(key);
+        assertSame(first, second);
+        assertEquals(before.hits() + 1, keyScheduleCache.stats().hits());
+        assertEquals(before.misses() + 1, keyScheduleCache.stats().misses());
+
+        first.close();
+        keyScheduleCache.clear();
+        assertEquals(0x5a, second.getKey()[5]);
+
+        second.close();
+        assertArrayEquals(new byte[16], second.getKey());
+        assertArrayEquals(new byte[256], second.getSBox());
+    }
+}
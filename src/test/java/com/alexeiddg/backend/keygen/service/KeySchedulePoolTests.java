@@ -0,0 +1,117 @@
+package com.alexeiddg.backend.keygen.service;
+
+import com.alexeiddg.backend.encryption.model.CipherFormat;
+import com.alexeiddg.backend.keygen.model.KeyMatrix;
+import com.alexeiddg.backend.keygen.model.KeySchedule;
+import com.alexeiddg.backend.keygen.model.PreparedKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"cipher.key-pool.capacity=4", "cipher.key-pool.min-size=4"})
+class KeySchedulePoolTests {
+
+    @Autowired
+    private KeySchedulePool keySchedulePool;
+
+    @Autowired
+    private KeyScheduleService keyScheduleService;
+
+    @Test
+    void pooledKeysCarryTheirFullScheduleAndEmptyPoolFallsBackInline() throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (keySchedulePool.size() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, keySchedulePool.size());
+
+        long pooledBefore = keySchedulePool.pooledCount();
+        long inlineBefore = keySchedulePool.inlineCount();
+        for (int i = 0; i < 6; i++) {
+            try (PreparedKey prepared = keySchedulePool.take();
+                 KeySchedule expected = keyScheduleService.buildSchedule(prepared.key(), keySchedulePool.format())) {
+                KeySchedule schedule = prepared.schedule();
+                assertEquals(expected.getRounds(), schedule.getRounds());
+                assertArrayEquals(expected.getSBox(), schedule.getSBox());
+                assertArrayEquals(expected.getIv(), schedule.getIv());
+            }
+        }
+
+        // The producer may refill between takes, so only the total is exact
+        long pooled = keySchedulePool.pooledCount() - pooledBefore;
+        long inline = keySchedulePool.inlineCount() - inlineBefore;
+        assertTrue(pooled >= 4);
+        assertEquals(6, pooled + inline);
+    }
+
+    // A schedule that is still being built when shutdown starts is closed with the rest, not queued after the drain
+    @Test
+    void shutdownClosesAKeyPreparedDuringTheDrain() throws Exception {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger built = new AtomicInteger();
+        AtomicInteger destroyed = new AtomicInteger();
+        // Schedule building is plain computation, so it runs to completion even when the producer is interrupted
+        KeyScheduleService slowService = new KeyScheduleService() {
+            @Override
+            public KeySchedule buildSchedule(KeyMatrix key, CipherFormat format) throws NoSuchAlgorithmException {
+                building.countDown();
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        release.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                KeySchedule schedule = keyScheduleService.buildSchedule(key, format);
+                built.incrementAndGet();
+                schedule.onDestroy(destroyed::incrementAndGet);
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return schedule;
+            }
+        };
+
+        KeySchedulePool pool = new KeySchedulePool();
+        for (String field : new String[]{"keyGenService", "meterRegistry", "format"}) {
+            ReflectionTestUtils.setField(pool, field, ReflectionTestUtils.getField(keySchedulePool, field));
+        }
+        ReflectionTestUtils.setField(pool, "keyScheduleService", slowService);
+        ReflectionTestUtils.setField(pool, "enabled", true);
+        ReflectionTestUtils.setField(pool, "capacity", 1);
+        ReflectionTestUtils.setField(pool, "minSize", 1);
+        ReflectionTestUtils.setField(pool, "horizon", Duration.ofSeconds(1));
+        pool.initialize();
+        assertTrue(building.await(10, TimeUnit.SECONDS));
+
+        Thread shutdown = Thread.ofPlatform().start(() -> {
+            try {
+                pool.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(100);
+        release.countDown();
+        shutdown.join(10_000);
+
+        assertFalse(shutdown.isAlive());
+        assertFalse(((Thread) ReflectionTestUtils.getField(pool, "producer")).isAlive());
+        assertEquals(0, ((ArrayBlockingQueue<?>) ReflectionTestUtils.getField(pool, "queue")).size());
+        assertEquals(1, built.get());
+        assertEquals(built.get(), destroyed.get());
+    }
+}
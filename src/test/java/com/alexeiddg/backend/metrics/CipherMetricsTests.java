@@ -0,0 +1,78 @@
+package com.alexeiddg.backend.metrics;
+
+import com.alexeiddg.backend.decryption.service.DecryptionService;
+import com.alexeiddg.backend.encryption.model.EncryptionResponse;
+import com.alexeiddg.backend.encryption.service.EncryptionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// A parallel pool with a small threshold splits each message into several ranges, so a stage timed
+// per range instead of per call would show up as more than one recording
+@SpringBootTest(properties = {
+        "cipher.engine.parallel.pool-size=2",
+        "cipher.engine.parallel.threshold-blocks=16"
+})
+class CipherMetricsTests {
+
+    @TestConfiguration
+    static class RegistryConfiguration {
+        @Bean
+        @Primary
+        MeterRegistry simpleMeterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private DecryptionService decryptionService;
+
+    @Test
+    void oneEncryptAndOneDecryptRecordEachStageOnce() throws Exception {
+        String text = "0123456789abcdef".repeat(200);
+        EncryptionResponse encrypted = encryptionService.encrypt(text);
+        assertEquals(text, decryptionService.decrypt(encrypted.getEncryptionKey(), encrypted.getCipherText()));
+
+        for (String stage : new String[]{"keygen", "padding", "rounds", "cbc", "encode"}) {
+            assertEquals(1, stage("encrypt", stage).count(), "encrypt " + stage);
+        }
+        for (String stage : new String[]{"decode", "cbc", "rounds", "padding"}) {
+            assertEquals(1, stage("decrypt", stage).count(), "decrypt " + stage);
+        }
+
+        DistributionSummary encryptBlocks = summary("cipher.payload.blocks", "encrypt");
+        DistributionSummary decryptBlocks = summary("cipher.payload.blocks", "decrypt");
+        assertEquals(1, encryptBlocks.count());
+        assertEquals(1, decryptBlocks.count());
+        assertEquals(encryptBlocks.totalAmount(), decryptBlocks.totalAmount());
+
+        DistributionSummary encryptRounds = summary("cipher.rounds", "encrypt");
+        DistributionSummary decryptRounds = summary("cipher.rounds", "decrypt");
+        assertEquals(1, encryptRounds.count());
+        assertEquals(encrypted.getIterations(), (int) encryptRounds.totalAmount());
+        assertEquals(encryptRounds.totalAmount(), decryptRounds.totalAmount());
+    }
+
+    private Timer stage(String operation, String stage) {
+        return meterRegistry.get("cipher.stage").tag("operation", operation).tag("stage", stage).timer();
+    }
+
+    private DistributionSummary summary(String name, String operation) {
+        return meterRegistry.get(name).tag("operation", operation).summary();
+    }
+}
@@ -0,0 +1,59 @@
+package com.alexeiddg.backend.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"cipher.entropy.pool.capacity=64", "cipher.entropy.pool.refill-batch=16"})
+class EntropyPoolTests {
+
+    @Autowired
+    private EntropyPool entropyPool;
+
+    @Test
+    void concurrentDrainsNeverHandOutTheSameSlice() throws Exception {
+        Set<ByteBuffer> seen = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int slicesPerThread = 2000;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < slicesPerThread; i++) {
+                    byte[] slice = new byte[16];
+                    entropyPool.nextBytes(slice);
+                    seen.add(ByteBuffer.wrap(slice));
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Demand far beyond the 64-slice ring: the pool serves what it can and the stripes cover the rest
+        assertEquals(threads * slicesPerThread, seen.size());
+        assertTrue(entropyPool.servedCount() > 0);
+        assertTrue(entropyPool.emptyCount() > 0);
+        assertTrue(entropyPool.size() <= 64);
+    }
+
+    @Test
+    void oddLengthsAreFilledCompletely() {
+        byte[] entropy = new byte[16 * 3 + 5];
+        entropyPool.nextBytes(entropy);
+        int zeroTail = 0;
+        for (int i = 48; i < entropy.length; i++) {
+            zeroTail += (entropy[i] == 0) ? 1 : 0;
+        }
+        assertTrue(zeroTail < 5);
+    }
+}